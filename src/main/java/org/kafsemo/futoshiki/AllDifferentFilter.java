@@ -0,0 +1,38 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+/**
+ * Reasoning about a row or column, whose cells must each hold a
+ * different value. Implementations may keep scratch space, so each
+ * belongs to a single search.
+ * 
+ * @author Joseph Walton
+ */
+interface AllDifferentFilter
+{
+    /**
+     * Remove any possibilities that could not be part of an assignment
+     * of different values to all of the cells.
+     * 
+     * @param cells the indexes of every cell in a row or column
+     * @return false if no such assignment remains
+     */
+    boolean filter(Possibilities poss, int[] cells);
+}
@@ -0,0 +1,429 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves a stream of puzzles on a pool of threads, handing back the
+ * results in the order the puzzles were read as soon as each is ready.
+ * Only a few puzzles per thread are read ahead, so a corpus of any size
+ * can be streamed through.
+ * <p>
+ * From the command line:
+ * <pre>
+ * java org.kafsemo.futoshiki.BatchSolver [-t threads] [-c] input [output]
+ * </pre>
+ * with <code>-c</code> to count every solution rather than stop at the
+ * second.
+ * 
+ * @author Joseph Walton
+ */
+public class BatchSolver
+{
+    /* How many puzzles to read ahead for each thread */
+    private static final int PENDING_PER_THREAD = 4;
+    
+    private final ExecutorService executor;
+    private final int maxPending;
+    
+    private boolean counting;
+    
+    /**
+     * @param executor where to solve the puzzles; it is not shut down
+     * @param threads how many threads the executor will use
+     */
+    public BatchSolver(ExecutorService executor, int threads)
+    {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive: "
+                    + threads);
+        }
+        
+        this.executor = executor;
+        this.maxPending = threads * PENDING_PER_THREAD;
+    }
+    
+    /**
+     * Choose whether to count every solution, rather than stopping at the
+     * second. Counted results have no solution.
+     */
+    public void setCounting(boolean counting)
+    {
+        this.counting = counting;
+    }
+    
+    public boolean isCounting()
+    {
+        return counting;
+    }
+    
+    /**
+     * Read and solve every puzzle, passing the results to the target in
+     * order, from this thread.
+     * 
+     * @return the number of puzzles read
+     */
+    public long solve(PuzzleReader in, ResultTarget target)
+        throws IOException, InterruptedException
+    {
+        Deque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+        long index = 0;
+        
+        try {
+            while (true) {
+                Futoshiki f;
+                
+                index++;
+                try {
+                    f = in.read();
+                } catch (IllegalArgumentException iae) {
+                    pending.add(new Failed(new Result(index, null, iae)));
+                    continue;
+                }
+                
+                if (f == null) {
+                    break;
+                }
+                
+                pending.add(executor.submit(new Task(index, f)));
+                
+                /* Pass on what's ready, and wait when too far ahead */
+                while (!pending.isEmpty() && (pending.peek().isDone()
+                        || pending.size() >= maxPending))
+                {
+                    target.result(get(pending.remove()));
+                }
+            }
+            
+            while (!pending.isEmpty()) {
+                target.result(get(pending.remove()));
+            }
+        } finally {
+            for (Future<Result> r : pending) {
+                r.cancel(true);
+            }
+        }
+        
+        return index - 1;
+    }
+    
+    private static Result get(Future<Result> f) throws InterruptedException
+    {
+        try {
+            return f.get();
+        } catch (ExecutionException ee) {
+            /* Tasks catch their own failures */
+            throw new RuntimeException(ee.getCause());
+        }
+    }
+    
+    private class Task implements Callable<Result>
+    {
+        private final long index;
+        private final Futoshiki puzzle;
+        
+        Task(long index, Futoshiki puzzle)
+        {
+            this.index = index;
+            this.puzzle = puzzle;
+        }
+        
+        public Result call()
+        {
+            long start = System.nanoTime();
+            
+            try {
+                if (counting) {
+                    long count = new Solver().count(puzzle);
+                    return new Result(index, puzzle, count,
+                            System.nanoTime() - start);
+                } else {
+                    Uniqueness u = new Solver().check(puzzle);
+                    return new Result(index, puzzle, u,
+                            System.nanoTime() - start);
+                }
+            } catch (RuntimeException re) {
+                return new Result(index, puzzle, re);
+            }
+        }
+    }
+    
+    /**
+     * A result known without solving, for a puzzle that couldn't be read.
+     */
+    private static class Failed implements Future<Result>
+    {
+        private final Result result;
+        
+        Failed(Result result)
+        {
+            this.result = result;
+        }
+        
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            return false;
+        }
+        
+        public boolean isCancelled()
+        {
+            return false;
+        }
+        
+        public boolean isDone()
+        {
+            return true;
+        }
+        
+        public Result get()
+        {
+            return result;
+        }
+        
+        public Result get(long timeout, TimeUnit unit)
+        {
+            return result;
+        }
+    }
+    
+    /**
+     * Receives results in the order their puzzles were read.
+     */
+    public interface ResultTarget
+    {
+        void result(Result r) throws IOException;
+    }
+    
+    /**
+     * The outcome for a single puzzle.
+     */
+    public static class Result
+    {
+        private final long index;
+        private final Futoshiki puzzle;
+        private final Uniqueness.Status status;
+        private final Futoshiki solution;
+        private final long count;
+        private final long nanos;
+        private final Exception error;
+        
+        private Result(long index, Futoshiki puzzle, Uniqueness.Status status,
+                Futoshiki solution, long count, long nanos, Exception error)
+        {
+            this.index = index;
+            this.puzzle = puzzle;
+            this.status = status;
+            this.solution = solution;
+            this.count = count;
+            this.nanos = nanos;
+            this.error = error;
+        }
+        
+        Result(long index, Futoshiki puzzle, Uniqueness u, long nanos)
+        {
+            this(index, puzzle, u.getStatus(), u.getSolution(), -1, nanos,
+                    null);
+        }
+        
+        Result(long index, Futoshiki puzzle, long count, long nanos)
+        {
+            this(index, puzzle, status(count), null, count, nanos, null);
+        }
+        
+        Result(long index, Futoshiki puzzle, Exception error)
+        {
+            this(index, puzzle, null, null, -1, 0, error);
+        }
+        
+        private static Uniqueness.Status status(long count)
+        {
+            if (count == 0) {
+                return Uniqueness.Status.NONE;
+            } else if (count == 1) {
+                return Uniqueness.Status.UNIQUE;
+            } else {
+                return Uniqueness.Status.MULTIPLE;
+            }
+        }
+        
+        /**
+         * @return the position of the puzzle in the input, from 1
+         */
+        public long getIndex()
+        {
+            return index;
+        }
+        
+        /**
+         * @return the puzzle, or <code>null</code> if it couldn't be read
+         */
+        public Futoshiki getPuzzle()
+        {
+            return puzzle;
+        }
+        
+        /**
+         * @return whether the puzzle has no solution, one or more than
+         * one, or <code>null</code> after an error
+         */
+        public Uniqueness.Status getStatus()
+        {
+            return status;
+        }
+        
+        /**
+         * @return a solution, if there is one and solutions weren't counted
+         */
+        public Futoshiki getSolution()
+        {
+            return solution;
+        }
+        
+        /**
+         * @return the exact number of solutions, or -1 if not counted
+         */
+        public long getCount()
+        {
+            return count;
+        }
+        
+        public long getNanos()
+        {
+            return nanos;
+        }
+        
+        /**
+         * @return why the puzzle couldn't be read or solved, or
+         * <code>null</code>
+         */
+        public Exception getError()
+        {
+            return error;
+        }
+    }
+    
+    /**
+     * Writes each result as a line of tab-separated fields: the index, the
+     * status, the count and the time in microseconds. Any solution follows
+     * in the text format, then an empty line.
+     */
+    public static class ResultWriter implements ResultTarget
+    {
+        private final Writer out;
+        
+        public ResultWriter(Writer out)
+        {
+            this.out = out;
+        }
+        
+        public void result(Result r) throws IOException
+        {
+            out.write(Long.toString(r.getIndex()));
+            out.write('\t');
+            
+            if (r.getError() != null) {
+                out.write("ERROR\t" + r.getError() + "\n");
+            } else {
+                out.write(r.getStatus().toString());
+                out.write('\t');
+                out.write(r.getCount() >= 0 ? Long.toString(r.getCount()) : "-");
+                out.write('\t');
+                out.write(Long.toString(r.getNanos() / 1000));
+                out.write('\n');
+                
+                if (r.getSolution() != null) {
+                    FutoshikiPrinter.print(r.getSolution(), out);
+                }
+            }
+            
+            out.write('\n');
+        }
+    }
+    
+    private static void usage(PrintStream out)
+    {
+        out.println("Usage: BatchSolver [-t threads] [-c] input [output]");
+    }
+    
+    public static void main(String[] args)
+        throws IOException, InterruptedException
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean counting = false;
+        String input = null, output = null;
+        
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-t") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-c")) {
+                counting = true;
+            } else if (input == null) {
+                input = args[i];
+            } else if (output == null) {
+                output = args[i];
+            } else {
+                usage(System.err);
+                System.exit(5);
+            }
+        }
+        
+        if (input == null) {
+            usage(System.err);
+            System.exit(5);
+        }
+        
+        Reader r = new InputStreamReader(new FileInputStream(input), "utf-8");
+        Writer w = new OutputStreamWriter(output != null
+                ? new FileOutputStream(output) : System.out, "utf-8");
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        
+        try {
+            BatchSolver bs = new BatchSolver(executor, threads);
+            bs.setCounting(counting);
+            
+            long start = System.currentTimeMillis();
+            long count = bs.solve(new PuzzleReader(r), new ResultWriter(w));
+            long end = System.currentTimeMillis();
+            
+            System.err.println(count + " puzzles in " + (end - start) + "ms");
+        } finally {
+            executor.shutdownNow();
+            r.close();
+            w.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads puzzles one after another from a stream of records written by
+ * {@link BinaryPuzzleWriter}.
+ * 
+ * @author Joseph Walton
+ */
+public class BinaryPuzzleReader implements Closeable
+{
+    private final DataInputStream in;
+    
+    /* Reused for each record of the same size */
+    private byte[] record = {};
+    
+    public BinaryPuzzleReader(InputStream in)
+    {
+        this.in = new DataInputStream(in);
+    }
+    
+    /**
+     * @return the next puzzle, or <code>null</code> at the end of the stream
+     * @throws EOFException if the stream ends part way through a record
+     * @throws IOException if a record is not a puzzle
+     */
+    public Futoshiki read() throws IOException
+    {
+        int length = in.read();
+        
+        if (length < 0) {
+            return null;
+        }
+        
+        if (length < 1 || length > Grid.MAX_LENGTH) {
+            throw new IOException("Bad puzzle size: " + length);
+        }
+        
+        int size = FutoshikiCodec.encodedLength(length);
+        
+        if (record.length != size) {
+            record = new byte[size];
+        }
+        
+        record[0] = (byte) length;
+        in.readFully(record, 1, size - 1);
+        
+        try {
+            return FutoshikiCodec.decode(record);
+        } catch (IllegalArgumentException iae) {
+            throw new IOException("Bad puzzle record: " + iae.getMessage());
+        }
+    }
+    
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes puzzles one after another as records in the binary form of
+ * {@link FutoshikiCodec}. Each record gives its own size, so no other
+ * framing is needed.
+ * 
+ * @author Joseph Walton
+ */
+public class BinaryPuzzleWriter implements Closeable, Flushable
+{
+    private final OutputStream out;
+    
+    /* Reused for each record that fits */
+    private ByteBuffer record = ByteBuffer.allocate(0);
+    
+    public BinaryPuzzleWriter(OutputStream out)
+    {
+        this.out = out;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if a rule is not between
+     * neighbouring cells
+     */
+    public void write(Futoshiki f) throws IOException
+    {
+        int size = FutoshikiCodec.encodedLength(f.getLength());
+        
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(size);
+        }
+        
+        record.clear();
+        FutoshikiCodec.encode(f, record);
+        
+        out.write(record.array(), 0, record.position());
+    }
+    
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+    
+    public void close() throws IOException
+    {
+        out.close();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+/**
+ * A token to stop a search from another thread. Searches check it every
+ * few hundred attempts, so they stop soon after it is cancelled.
+ * 
+ * @author Joseph Walton
+ */
+public class Cancellation
+{
+    private volatile boolean cancelled;
+    
+    public void cancel()
+    {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.math.BigInteger;
+
+import org.kafsemo.futoshiki.Solver.AllDifferent;
+import org.kafsemo.futoshiki.Solver.SolutionTarget;
+
+/**
+ * A solver that treats a puzzle as an exact cover problem, with Knuth's
+ * Algorithm X over dancing links. Every cell needs a value, and every row
+ * and every column needs each value once; each choice of a value for a cell
+ * covers one of each. The rules are checked on top, against the values
+ * already chosen for the cells on their other side.
+ * <p>
+ * This is fastest for puzzles with few rules, such as the empty puzzles
+ * counted for Latin squares. As for {@link Solver}, the target is told the
+ * total number of possibilities at the start and zero at the end.
+ * 
+ * @author Joseph Walton
+ */
+public class DancingLinksSolver
+{
+    private final SolutionTarget target;
+    
+    /**
+     * Create a solver that will only {@link #count(Futoshiki) count}
+     * solutions.
+     */
+    public DancingLinksSolver()
+    {
+        this(null);
+    }
+    
+    public DancingLinksSolver(SolutionTarget target)
+    {
+        this.target = target;
+    }
+    
+    public void solve(Futoshiki f)
+    {
+        if (target == null) {
+            throw new IllegalStateException("No target for solutions");
+        }
+        
+        Possibilities poss = new Possibilities(f.getLength());
+        boolean consistent = poss.use(f, propagator(f));
+        
+        if (!target.remainingPossibilities(poss.size())) {
+            return;
+        }
+        
+        if (!consistent || new Links(f, poss).solve()) {
+            target.remainingPossibilities(BigInteger.ZERO);
+        }
+    }
+    
+    /**
+     * Count the solutions to a puzzle without reporting each one.
+     * 
+     * @throws ArithmeticException if there are too many solutions to count
+     * in a long
+     */
+    public long count(Futoshiki f)
+    {
+        if (isEmpty(f) && f.getLength() > 2) {
+            return countEmpty(f.getLength());
+        }
+        
+        Possibilities poss = new Possibilities(f.getLength());
+        
+        if (!poss.use(f, propagator(f))) {
+            return 0;
+        }
+        
+        return new Links(f, poss).count();
+    }
+    
+    private static boolean isEmpty(Futoshiki f)
+    {
+        return !f.getRules().iterator().hasNext()
+            && f.blankCells().size() == f.getLength() * f.getLength();
+    }
+    
+    /**
+     * Count the Latin squares of a size. Any square can be made, in exactly
+     * one way, from a square with its first row and column in order by
+     * rearranging all its columns and then all but its first row. Only
+     * those squares need to be searched.
+     */
+    private long countEmpty(int length)
+    {
+        Futoshiki reduced = new Futoshiki(length);
+        
+        for (int i = 1; i <= length; i++) {
+            reduced.set(i, 1, i);
+            reduced.set(1, i, i);
+        }
+        
+        BigInteger total = BigInteger.valueOf(count(reduced));
+        
+        for (int i = 2; i <= length; i++) {
+            total = total.multiply(BigInteger.valueOf(i * (long) (i - 1)));
+        }
+        
+        if (total.bitLength() >= Long.SIZE) {
+            throw new ArithmeticException("Solution count overflow");
+        }
+        
+        return total.longValue();
+    }
+    
+    /**
+     * Rule out what can be ruled out before the search, so the matrix
+     * starts with only those choices that may still lead to a solution.
+     */
+    private static Propagator propagator(Futoshiki f)
+    {
+        return Solver.propagator(new RuleGraph(f), AllDifferent.MATCHING);
+    }
+    
+    /**
+     * The exact cover matrix for a single search, as arrays of links.
+     * Node 0 is the root, nodes 1 to <code>3n&sup2;</code> head the
+     * columns, and the nodes for each choice follow in threes.
+     */
+    private class Links
+    {
+        private final Futoshiki f;
+        private final int length;
+        
+        private final int[] left, right, up, down, column;
+        
+        /* For each node, the cell and value it chooses */
+        private final int[] cell, value;
+        
+        /* For each column, how many choices remain to cover it */
+        private final int[] size;
+        
+        /* The rules around each cell, and the value chosen for each cell */
+        private final int[][] lesser, greater;
+        private final int[] chosen;
+        
+        Links(Futoshiki f, Possibilities poss)
+        {
+            this.f = f;
+            this.length = f.getLength();
+            
+            final int cells = length * length;
+            final int columns = 3 * cells;
+            
+            int choices = 0;
+            for (int i = 0; i < cells; i++) {
+                choices += Long.bitCount(poss.mask(i));
+            }
+            
+            int nodes = 1 + columns + 3 * choices;
+            
+            left = new int[nodes];
+            right = new int[nodes];
+            up = new int[nodes];
+            down = new int[nodes];
+            column = new int[nodes];
+            cell = new int[nodes];
+            value = new int[nodes];
+            size = new int[columns + 1];
+            
+            for (int c = 0; c <= columns; c++) {
+                left[c] = (c == 0) ? columns : c - 1;
+                right[c] = (c == columns) ? 0 : c + 1;
+                up[c] = c;
+                down[c] = c;
+            }
+            
+            int n = columns + 1;
+            
+            for (int i = 0; i < cells; i++) {
+                int row = i / length, col = i % length;
+                
+                for (long m = poss.mask(i); m != 0; m &= m - 1) {
+                    int v = Possibilities.lowest(m);
+                    
+                    /* The cell, the value in its row, the value in its column */
+                    int[] covers = {
+                            1 + i,
+                            1 + cells + row * length + v - 1,
+                            1 + 2 * cells + col * length + v - 1
+                    };
+                    
+                    for (int k = 0; k < 3; k++) {
+                        int c = covers[k];
+                        
+                        column[n + k] = c;
+                        cell[n + k] = i;
+                        value[n + k] = v;
+                        left[n + k] = n + (k + 2) % 3;
+                        right[n + k] = n + (k + 1) % 3;
+                        
+                        up[n + k] = up[c];
+                        down[n + k] = c;
+                        down[up[c]] = n + k;
+                        up[c] = n + k;
+                        size[c]++;
+                    }
+                    
+                    n += 3;
+                }
+            }
+            
+            int[] lesserCount = new int[cells], greaterCount = new int[cells];
+            
+            for (GtRule r : f.getRules()) {
+                lesserCount[index(r.getGreaterColumn(), r.getGreaterRow())]++;
+                greaterCount[index(r.getLesserColumn(), r.getLesserRow())]++;
+            }
+            
+            lesser = new int[cells][];
+            greater = new int[cells][];
+            
+            for (int i = 0; i < cells; i++) {
+                lesser[i] = new int[lesserCount[i]];
+                greater[i] = new int[greaterCount[i]];
+                lesserCount[i] = 0;
+                greaterCount[i] = 0;
+            }
+            
+            for (GtRule r : f.getRules()) {
+                int a = index(r.getGreaterColumn(), r.getGreaterRow()),
+                    b = index(r.getLesserColumn(), r.getLesserRow());
+                
+                lesser[a][lesserCount[a]++] = b;
+                greater[b][greaterCount[b]++] = a;
+            }
+            
+            chosen = new int[cells];
+        }
+        
+        private int index(int column, int row)
+        {
+            return (row - 1) * length + (column - 1);
+        }
+        
+        /**
+         * Remove a column from the header list, and every choice that
+         * covers it from the other columns.
+         */
+        private void cover(int c)
+        {
+            right[left[c]] = right[c];
+            left[right[c]] = left[c];
+            
+            for (int i = down[c]; i != c; i = down[i]) {
+                for (int j = right[i]; j != i; j = right[j]) {
+                    down[up[j]] = down[j];
+                    up[down[j]] = up[j];
+                    size[column[j]]--;
+                }
+            }
+        }
+        
+        /**
+         * Exactly reverse {@link #cover(int)}.
+         */
+        private void uncover(int c)
+        {
+            for (int i = up[c]; i != c; i = up[i]) {
+                for (int j = left[i]; j != i; j = left[j]) {
+                    size[column[j]]++;
+                    down[up[j]] = j;
+                    up[down[j]] = j;
+                }
+            }
+            
+            right[left[c]] = c;
+            left[right[c]] = c;
+        }
+        
+        /**
+         * @return the uncovered column with fewest choices left, or 0 if
+         * every column is covered
+         */
+        private int smallestColumn()
+        {
+            int best = 0;
+            int fewest = Integer.MAX_VALUE;
+            
+            for (int c = right[0]; c != 0; c = right[c]) {
+                if (size[c] < fewest) {
+                    best = c;
+                    fewest = size[c];
+                    
+                    if (fewest <= 1) {
+                        break;
+                    }
+                }
+            }
+            
+            return best;
+        }
+        
+        /**
+         * Whether a value for a cell keeps to the rules with the cells
+         * already chosen.
+         */
+        private boolean allowed(int i, int v)
+        {
+            for (int j : lesser[i]) {
+                if (chosen[j] != 0 && chosen[j] >= v) {
+                    return false;
+                }
+            }
+            
+            for (int j : greater[i]) {
+                if (chosen[j] != 0 && chosen[j] <= v) {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+        
+        private void choose(int r)
+        {
+            chosen[cell[r]] = value[r];
+            
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+        }
+        
+        private void unchoose(int r)
+        {
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+            
+            chosen[cell[r]] = 0;
+        }
+        
+        /**
+         * @return false if the target wants no more solutions
+         */
+        boolean solve()
+        {
+            int c = smallestColumn();
+            
+            if (c == 0) {
+                return target.solution(solution());
+            }
+            
+            boolean more = true;
+            
+            cover(c);
+            
+            for (int r = down[c]; more && r != c; r = down[r]) {
+                if (allowed(cell[r], value[r])) {
+                    choose(r);
+                    more = solve();
+                    unchoose(r);
+                }
+            }
+            
+            uncover(c);
+            
+            return more;
+        }
+        
+        long count()
+        {
+            int c = smallestColumn();
+            
+            if (c == 0) {
+                return 1;
+            }
+            
+            long total = 0;
+            
+            cover(c);
+            
+            for (int r = down[c]; r != c; r = down[r]) {
+                if (allowed(cell[r], value[r])) {
+                    choose(r);
+                    long n = count();
+                    unchoose(r);
+                    
+                    if (total > Long.MAX_VALUE - n) {
+                        throw new ArithmeticException("Solution count overflow");
+                    }
+                    
+                    total += n;
+                }
+            }
+            
+            uncover(c);
+            
+            return total;
+        }
+        
+        private Futoshiki solution()
+        {
+            Futoshiki s = f.clone();
+            
+            for (int i = 0; i < chosen.length; i++) {
+                s.set(i % length + 1, i / length + 1, chosen[i]);
+            }
+            
+            return s;
+        }
+    }
+}
@@ -20,7 +20,6 @@ package org.kafsemo.futoshiki;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -38,10 +37,22 @@ public class Futoshiki extends Grid
 {
     private final byte[] data;
     
+    /* How many times each value appears in each row and column */
+    private final int[] rowCounts, columnCounts;
+    
+    /* Surplus occurrences of values within rows and columns */
+    private int duplicates;
+    
     private Map<GtRule, ValidatingRule> rules;
     private Iterable<ValidatingRule> vraCache;
     private Iterable<GtRule> origRuleIterable;
     
+    /* The rules involving each cell; null until needed after a change */
+    private ValidatingRule[][] rulesByCell;
+    
+    /* Rules currently broken, only maintained while rulesByCell is set */
+    private int violations;
+    
     public Futoshiki()
     {
         this(5);
@@ -51,6 +62,8 @@ public class Futoshiki extends Grid
     {
         super(length);
         this.data = new byte[length * length];
+        this.rowCounts = new int[length * length];
+        this.columnCounts = new int[length * length];
     }
     
     private Iterable<ValidatingRule> getValidatingRules()
@@ -81,51 +94,61 @@ public class Futoshiki extends Grid
     }
     
     /**
-     * Is this puzzle state currently valid? Checks for duplicate numbers
-     * in rows or columns and that all rules are followed.
-     * 
-     * @return
+     * Index the rules by the cells they involve, and count how many
+     * are currently broken.
      */
-    public boolean isValid()
+    private ValidatingRule[][] getRulesByCell()
     {
-        /* Check for duplicates */
-        
-        BitSet columnMask = new BitSet(length * length);
-
-        assert (length * length) <= columnMask.size();
-        
-        for (int row = 1; row <= length; row++) {
-            int rowMask = 0;
-
-            assert length < 32;
+        if (rulesByCell == null) {
+            int[] degree = new int[data.length];
             
-            for (int column = 1; column <= length; column++) {
-                int v = data[idxInternal(column, row)];
-                if (v == 0)
-                    continue;
-                
-                int bit = (1 << v);
-                if ((rowMask & bit) != 0)
-                    return false;
-                
-                int columnContainsValueBit = (column - 1) * length + v;
-                
-                if (columnMask.get(columnContainsValueBit))
-                    return false;
+            for (ValidatingRule r : getValidatingRules()) {
+                degree[r.idxA]++;
+                if (r.idxB != r.idxA) {
+                    degree[r.idxB]++;
+                }
+            }
+            
+            ValidatingRule[][] byCell = new ValidatingRule[data.length][];
+            for (int i = 0; i < byCell.length; i++) {
+                byCell[i] = new ValidatingRule[degree[i]];
+                degree[i] = 0;
+            }
+            
+            int broken = 0;
+            
+            for (ValidatingRule r : getValidatingRules()) {
+                byCell[r.idxA][degree[r.idxA]++] = r;
+                if (r.idxB != r.idxA) {
+                    byCell[r.idxB][degree[r.idxB]++] = r;
+                }
                 
-                rowMask |= bit;
-                columnMask.set(columnContainsValueBit);
+                if (!r.isValid(this)) {
+                    broken++;
+                }
             }
+            
+            rulesByCell = byCell;
+            violations = broken;
         }
         
-        /* Obey rules */
-        for (ValidatingRule r : getValidatingRules()) {
-            if (!r.isValid(this))
-                return false;
-        }
+        return rulesByCell;
+    }
+    
+    /**
+     * Is this puzzle state currently valid? Checks for duplicate numbers
+     * in rows or columns and that all rules are followed.
+     * <p>
+     * Both are tracked as cells are set and cleared, so this is cheap
+     * unless the rules have changed since the last check.
+     * 
+     * @return
+     */
+    public boolean isValid()
+    {
+        getRulesByCell();
         
-        /* No violations, so valid */
-        return true;
+        return duplicates == 0 && violations == 0;
     }
 
     public boolean isFull()
@@ -138,17 +161,123 @@ public class Futoshiki extends Grid
         return true;
     }
 
+    /**
+     * Which way any rule between two cells points, found through the
+     * index of rules by cell.
+     * 
+     * @return 1 if a rule makes the first cell greater, -1 if the second,
+     * otherwise 0
+     */
+    int ruleBetween(int columnA, int rowA, int columnB, int rowB)
+    {
+        int a = idx(columnA, rowA), b = idx(columnB, rowB);
+        
+        for (ValidatingRule r : getRulesByCell()[a]) {
+            if (r.idxA == a && r.idxB == b) {
+                return 1;
+            } else if (r.idxA == b && r.idxB == a) {
+                return -1;
+            }
+        }
+        
+        return 0;
+    }
+    
     public void set(int column, int row, int v)
     {
         if (v < 1 || v > length)
             throw new IllegalArgumentException("Bad cell value " + v);
         
-        data[idx(column, row)] = (byte) v;
+        change(column, row, v);
     }
 
     public void clear(int column, int row)
     {
-        data[idx(column, row)] = 0;
+        change(column, row, 0);
+    }
+    
+    /**
+     * Change a single cell, adjusting the duplicate and broken rule
+     * counts for that cell's row, column and rules only.
+     */
+    private void change(int column, int row, int v)
+    {
+        int i = idx(column, row);
+        int old = data[i];
+        
+        if (old == v) {
+            return;
+        }
+        
+        ValidatingRule[] cellRules;
+        
+        if (rulesByCell != null) {
+            cellRules = rulesByCell[i];
+            violations -= countBroken(cellRules);
+        } else {
+            cellRules = null;
+        }
+        
+        if (old != 0) {
+            removeCount(rowCounts, (row - 1) * length + old - 1);
+            removeCount(columnCounts, (column - 1) * length + old - 1);
+        }
+        
+        data[i] = (byte) v;
+        
+        if (v != 0) {
+            addCount(rowCounts, (row - 1) * length + v - 1);
+            addCount(columnCounts, (column - 1) * length + v - 1);
+        }
+        
+        if (cellRules != null) {
+            violations += countBroken(cellRules);
+        }
+    }
+    
+    private void addCount(int[] counts, int i)
+    {
+        if (counts[i]++ > 0) {
+            duplicates++;
+        }
+    }
+    
+    private void removeCount(int[] counts, int i)
+    {
+        if (--counts[i] > 0) {
+            duplicates--;
+        }
+    }
+    
+    private int countBroken(ValidatingRule[] rules)
+    {
+        int broken = 0;
+        
+        for (ValidatingRule r : rules) {
+            if (!r.isValid(this)) {
+                broken++;
+            }
+        }
+        
+        return broken;
+    }
+    
+    /**
+     * Clear every cell and remove every rule, so the puzzle can be
+     * filled in again from scratch.
+     */
+    void reset()
+    {
+        Arrays.fill(data, (byte) 0);
+        Arrays.fill(rowCounts, 0);
+        Arrays.fill(columnCounts, 0);
+        duplicates = 0;
+        
+        rules = null;
+        vraCache = null;
+        origRuleIterable = null;
+        rulesByCell = null;
+        violations = 0;
     }
     
     public void addGtRule(int columnA, int rowA, int columnB, int rowB)
@@ -160,14 +289,23 @@ public class Futoshiki extends Grid
         ruleMap().put(k, new ValidatingRule(newRule, this));
         vraCache = null;
         origRuleIterable = null;
+        rulesByCell = null;
     }
     
     public Futoshiki clone()
     {
         Futoshiki f = new Futoshiki(length);
         System.arraycopy(data, 0, f.data, 0, data.length);
+        System.arraycopy(rowCounts, 0, f.rowCounts, 0, rowCounts.length);
+        System.arraycopy(columnCounts, 0, f.columnCounts, 0,
+                            columnCounts.length);
+        f.duplicates = duplicates;
         f.vraCache = getValidatingRules();
         f.origRuleIterable = origRuleIterable;
+        
+        /* The index is never changed once built, so it can be shared */
+        f.rulesByCell = rulesByCell;
+        f.violations = violations;
         return f;
     }
 
@@ -223,6 +361,14 @@ public class Futoshiki extends Grid
         return origRuleIterable;
     }
     
+    /**
+     * @return how many rules there are
+     */
+    int getRuleCount()
+    {
+        return ruleMap().size();
+    }
+    
     public GtRule getRule(GtRule ruleKey)
     {
         GtRule k = ruleKey.getCanonPosForm();
@@ -242,6 +388,7 @@ public class Futoshiki extends Grid
         ruleMap().remove(k);
         vraCache = null;
         origRuleIterable = null;
+        rulesByCell = null;
     }
     
     private static class ValidatingRule
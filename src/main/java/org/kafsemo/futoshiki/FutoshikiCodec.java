@@ -0,0 +1,245 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary form for puzzles. A record is one byte for the size
+ * <i>n</i>, then a stream of bits, most significant first, padded to
+ * a whole byte:
+ * <ul>
+ * <li>each cell's value, row by row, in just enough bits for <i>n</i>
+ * (zero for blank);</li>
+ * <li>two bits for each pair of cells side by side, row by row: whether
+ * there is a rule, then whether the right-hand cell is the greater;</li>
+ * <li>two bits for each pair of cells one above the other, in the same
+ * order: whether there is a rule, then whether the lower cell is the
+ * greater.</li>
+ * </ul>
+ * A 9x9 puzzle takes 78 bytes. Only rules between neighbouring cells,
+ * as the text format shows, can be encoded.
+ * 
+ * @author Joseph Walton
+ */
+public class FutoshikiCodec
+{
+    private FutoshikiCodec()
+    {
+    }
+    
+    /**
+     * How many bits hold a cell's value, for a puzzle of this size.
+     */
+    static int bitsPerCell(int length)
+    {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(length);
+    }
+    
+    /**
+     * @return the number of bytes in a record for a puzzle of this size
+     */
+    public static int encodedLength(int length)
+    {
+        long bits = (long) length * length * bitsPerCell(length)
+            + 4L * length * (length - 1);
+        
+        return 1 + (int) ((bits + 7) / 8);
+    }
+    
+    public static byte[] encode(Futoshiki f)
+    {
+        ByteBuffer bb = ByteBuffer.allocate(encodedLength(f.getLength()));
+        encode(f, bb);
+        return bb.array();
+    }
+    
+    /**
+     * Write a puzzle's record at the buffer's position, advancing it.
+     * 
+     * @throws IllegalArgumentException if a rule is not between
+     * neighbouring cells
+     */
+    public static void encode(Futoshiki f, ByteBuffer out)
+    {
+        final int length = f.getLength();
+        
+        /* Two bits for each neighbouring pair, with rules dropped in */
+        int pairs = length * (length - 1);
+        byte[] across = new byte[pairs], down = new byte[pairs];
+        
+        for (GtRule r : f.getRules()) {
+            int dc = r.getLesserColumn() - r.getGreaterColumn(),
+                dr = r.getLesserRow() - r.getGreaterRow();
+            
+            /* Upper or left-hand cell of the pair */
+            int column = Math.min(r.getGreaterColumn(), r.getLesserColumn()),
+                row = Math.min(r.getGreaterRow(), r.getLesserRow());
+            
+            if (dr == 0 && Math.abs(dc) == 1) {
+                across[(row - 1) * (length - 1) + column - 1] =
+                    (byte) (dc < 0 ? 3 : 2);
+            } else if (dc == 0 && Math.abs(dr) == 1) {
+                down[(row - 1) * length + column - 1] =
+                    (byte) (dr < 0 ? 3 : 2);
+            } else {
+                throw new IllegalArgumentException(
+                        "Only rules between neighbouring cells can be encoded: "
+                        + r);
+            }
+        }
+        
+        out.put((byte) length);
+        
+        BitWriter bw = new BitWriter(out);
+        int bits = bitsPerCell(length);
+        
+        for (int row = 1; row <= length; row++) {
+            for (int column = 1; column <= length; column++) {
+                bw.write(f.get(column, row), bits);
+            }
+        }
+        
+        for (byte b : across) {
+            bw.write(b, 2);
+        }
+        
+        for (byte b : down) {
+            bw.write(b, 2);
+        }
+        
+        bw.flush();
+    }
+    
+    public static Futoshiki decode(byte[] record)
+    {
+        return decode(ByteBuffer.wrap(record));
+    }
+    
+    /**
+     * Read a puzzle's record from the buffer's position, advancing it.
+     * 
+     * @throws IllegalArgumentException if the record is not a puzzle
+     * @throws BufferUnderflowException if the record is cut short
+     */
+    public static Futoshiki decode(ByteBuffer in)
+    {
+        int length = in.get() & 0xFF;
+        
+        Futoshiki f = new Futoshiki(length);
+        
+        BitReader br = new BitReader(in);
+        int bits = bitsPerCell(length);
+        
+        for (int row = 1; row <= length; row++) {
+            for (int column = 1; column <= length; column++) {
+                int v = br.read(bits);
+                
+                if (v > length) {
+                    throw new IllegalArgumentException("Bad cell value " + v);
+                } else if (v != 0) {
+                    f.set(column, row, v);
+                }
+            }
+        }
+        
+        for (int row = 1; row <= length; row++) {
+            for (int column = 1; column < length; column++) {
+                int b = br.read(2);
+                
+                if (b == 2) {
+                    f.addGtRule(column, row, column + 1, row);
+                } else if (b == 3) {
+                    f.addGtRule(column + 1, row, column, row);
+                }
+            }
+        }
+        
+        for (int row = 1; row < length; row++) {
+            for (int column = 1; column <= length; column++) {
+                int b = br.read(2);
+                
+                if (b == 2) {
+                    f.addGtRule(column, row, column, row + 1);
+                } else if (b == 3) {
+                    f.addGtRule(column, row + 1, column, row);
+                }
+            }
+        }
+        
+        return f;
+    }
+    
+    /**
+     * Packs values into bytes, most significant bit first.
+     */
+    private static class BitWriter
+    {
+        private final ByteBuffer out;
+        private int acc, count;
+        
+        BitWriter(ByteBuffer out)
+        {
+            this.out = out;
+        }
+        
+        void write(int value, int bits)
+        {
+            acc = (acc << bits) | value;
+            count += bits;
+            
+            while (count >= 8) {
+                count -= 8;
+                out.put((byte) (acc >>> count));
+            }
+        }
+        
+        void flush()
+        {
+            if (count > 0) {
+                out.put((byte) (acc << (8 - count)));
+                count = 0;
+            }
+        }
+    }
+    
+    private static class BitReader
+    {
+        private final ByteBuffer in;
+        private int acc, count;
+        
+        BitReader(ByteBuffer in)
+        {
+            this.in = in;
+        }
+        
+        int read(int bits)
+        {
+            while (count < bits) {
+                acc = (acc << 8) | (in.get() & 0xFF);
+                count += 8;
+            }
+            
+            count -= bits;
+            return (acc >>> count) & ((1 << bits) - 1);
+        }
+    }
+}
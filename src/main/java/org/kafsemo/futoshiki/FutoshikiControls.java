@@ -36,6 +36,7 @@ import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.border.Border;
@@ -53,6 +54,8 @@ public class FutoshikiControls
     private final JLabel vlcLabel = new JLabel("(Unknown)");
     
     private final JButton solve = new JButton("Solve");
+    private final JButton cancel = new JButton("Cancel");
+    private final JProgressBar progress = new JProgressBar(0, 100);
     private final JButton undo = new JButton("Undo");
     private final JButton clear = new JButton("Clear");
     private final JButton editButton = new JButton("Edit...");
@@ -75,6 +78,19 @@ public class FutoshikiControls
             }
         });
 
+        cancel.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e)
+            {
+                fp.cancelSolve();
+            }
+        });
+        
+        cancel.setEnabled(false);
+        fp.addPropertyChangeListener("futoshiki.solving",
+                new SolvingListener(solve, cancel, progress));
+        fp.addPropertyChangeListener("futoshiki.progress",
+                new ProgressListener(progress));
+
         clear.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e)
             {
@@ -165,6 +181,48 @@ public class FutoshikiControls
         }
     }
     
+    private static class SolvingListener implements PropertyChangeListener
+    {
+        private final JComponent start, cancel;
+        private final JProgressBar progress;
+        
+        public SolvingListener(JComponent start, JComponent cancel,
+                JProgressBar progress)
+        {
+            this.start = start;
+            this.cancel = cancel;
+            this.progress = progress;
+        }
+        
+        public void propertyChange(PropertyChangeEvent evt)
+        {
+            if (evt.getPropertyName().equals("futoshiki.solving")) {
+                boolean solving = Boolean.TRUE.equals(evt.getNewValue());
+                
+                start.setEnabled(!solving);
+                cancel.setEnabled(solving);
+                progress.setValue(0);
+            }
+        }
+    }
+    
+    private static class ProgressListener implements PropertyChangeListener
+    {
+        private final JProgressBar progress;
+        
+        public ProgressListener(JProgressBar progress)
+        {
+            this.progress = progress;
+        }
+        
+        public void propertyChange(PropertyChangeEvent evt)
+        {
+            if (evt.getPropertyName().equals("futoshiki.progress")) {
+                progress.setValue(((Integer) evt.getNewValue()).intValue());
+            }
+        }
+    }
+    
     private static class PuzzleSizeListener implements PropertyChangeListener
     {
         private final JComboBox sizeControl;
@@ -237,6 +295,12 @@ public class FutoshikiControls
         panel.add(editButton, gbc);
         
         gbc.gridy = 3;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        panel.add(progress, gbc);
+        gbc.fill = GridBagConstraints.BOTH;
+        panel.add(cancel, gbc);
+        
+        gbc.gridy = 4;
         gbc.fill = GridBagConstraints.NONE;
         panel.add(size, gbc);
         
@@ -262,7 +326,7 @@ public class FutoshikiControls
     
     private static String[] sizeNames()
     {
-        String[] sa = new String[9];
+        String[] sa = new String[Grid.MAX_LENGTH];
         for (int s = 1; s <= sa.length; s++) {
             sa[s - 1] = s + "x" + s;
         }
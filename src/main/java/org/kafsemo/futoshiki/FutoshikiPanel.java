@@ -41,14 +41,23 @@ import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+
+import org.kafsemo.futoshiki.Solver.AllDifferent;
+import org.kafsemo.futoshiki.Solver.Progress;
+import org.kafsemo.futoshiki.Solver.SolutionTarget;
 
 /**
  * A graphical display for a puzzle that the user can edit.
@@ -70,6 +79,10 @@ public class FutoshikiPanel extends JPanel implements FocusListener
     
     private List<Futoshiki> undoRecord = new ArrayList<Futoshiki>();
     
+    /* The solve in progress, if any, and where to run the next */
+    private SolveWorker solving;
+    private Executor solveExecutor;
+    
     public FutoshikiPanel()
     {
         addMouseListener(new ClickListener());
@@ -102,8 +115,8 @@ public class FutoshikiPanel extends JPanel implements FocusListener
         Graphics g = getGraphics();
         
         /* Get a bounding box for all digits */
-        for (int i = 0; i < 10; i++) {
-            String s = Integer.toString(i);
+        for (int i = 1; i <= futoshiki.getLength(); i++) {
+            String s = String.valueOf(FutoshikiPrinter.digit(i));
             Rectangle bounds = fm.getStringBounds(s, g).getBounds();
 
             maxWidth = Math.max(maxWidth, bounds.width);
@@ -178,7 +191,7 @@ public class FutoshikiPanel extends JPanel implements FocusListener
                 }
                 
                 if (v > 0) {
-                    String s = Integer.toString(v);
+                    String s = String.valueOf(FutoshikiPrinter.digit(v));
                     
                     Rectangle2D sb = fm.getStringBounds(s, g);
                     
@@ -385,22 +398,102 @@ public class FutoshikiPanel extends JPanel implements FocusListener
         }
     }
     
+    /**
+     * Choose where puzzles are solved, rather than on the worker threads
+     * Swing provides.
+     */
+    public void setSolveExecutor(Executor solveExecutor)
+    {
+        this.solveExecutor = solveExecutor;
+    }
+    
+    /**
+     * Start solving the puzzle in the background, unless already solving.
+     * The <code>futoshiki.solving</code> property is true until it's done,
+     * with <code>futoshiki.progress</code> as a percentage along the way.
+     * Any change to the puzzle cancels the solve.
+     */
     public void solve()
     {
-        SolutionInProgress sip = new SolutionInProgress();
-
-        // Do this in another thread?
-        new Solver(sip).solve(futoshiki.clone());
+        if (solving != null) {
+            return;
+        }
         
-        if (sip.solution != null) {
+        final SolveWorker w = new SolveWorker(futoshiki.clone());
+        w.addPropertyChangeListener(new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt)
+            {
+                if (w == solving && evt.getPropertyName().equals("progress")) {
+                    firePropertyChange("futoshiki.progress",
+                            evt.getOldValue(), evt.getNewValue());
+                }
+            }
+        });
+        
+        solving = w;
+        firePropertyChange("futoshiki.solving", Boolean.FALSE, Boolean.TRUE);
+        
+        if (solveExecutor != null) {
+            solveExecutor.execute(solving);
+        } else {
+            solving.execute();
+        }
+    }
+    
+    public boolean isSolving()
+    {
+        return solving != null;
+    }
+    
+    /**
+     * Stop any solve in progress, leaving the puzzle as it is. The search
+     * stops soon after, and until it has the panel is still solving.
+     */
+    public void cancelSolve()
+    {
+        if (solving != null) {
+            solving.cancellation.cancel();
+        }
+    }
+    
+    /**
+     * Called on the event thread once a solve is over.
+     */
+    private void solveDone(SolveWorker w)
+    {
+        if (w != solving) {
+            return;
+        }
+        
+        solving = null;
+        firePropertyChange("futoshiki.solving", Boolean.TRUE, Boolean.FALSE);
+        
+        /* Changes to the puzzle cancel the solve, but may come too late */
+        if (w.cancellation.isCancelled() || !w.puzzle.equals(futoshiki)) {
+            return;
+        }
+        
+        Uniqueness u;
+        try {
+            u = w.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException ee) {
+            JOptionPane.showMessageDialog(this, "Unable to solve: "
+                    + ee.getCause(), TITLE, JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        if (u.getStatus() != Uniqueness.Status.NONE) {
             for (CellPos cp : futoshiki.blankCells()) {
                 solvedCells.add(cp);
             }
-            futoshiki = sip.solution;
+            futoshiki = u.getSolution();
             selected = null;
             changed();
             
-            if (sip.multipleSolutions) {
+            if (u.getStatus() == Uniqueness.Status.MULTIPLE) {
                 JOptionPane.showMessageDialog(this,
                         "There are multiple solutions.", TITLE,
                         JOptionPane.INFORMATION_MESSAGE);
@@ -411,6 +504,67 @@ public class FutoshikiPanel extends JPanel implements FocusListener
         }
     }
     
+    /**
+     * Solves a copy of the puzzle, stopping at a second solution, and
+     * estimates progress from the possibilities remaining.
+     */
+    private class SolveWorker extends SwingWorker<Uniqueness, Void>
+        implements SolutionTarget
+    {
+        final Futoshiki puzzle;
+        final Cancellation cancellation = new Cancellation();
+        
+        private Futoshiki solution, otherSolution;
+        private BigInteger total;
+        
+        SolveWorker(Futoshiki puzzle)
+        {
+            this.puzzle = puzzle;
+        }
+        
+        @Override
+        protected Uniqueness doInBackground()
+        {
+            Solver s = new Solver(this);
+            s.setAllDifferent(AllDifferent.MATCHING);
+            s.setProgress(Progress.ESTIMATED);
+            s.setCancellation(cancellation);
+            s.solve(puzzle);
+            
+            return new Uniqueness(solution, otherSolution);
+        }
+        
+        public boolean solution(Futoshiki f)
+        {
+            if (solution == null) {
+                solution = f;
+            } else {
+                otherSolution = f;
+            }
+            
+            return otherSolution == null && !cancellation.isCancelled();
+        }
+        
+        public boolean remainingPossibilities(BigInteger count)
+        {
+            if (total == null) {
+                total = count;
+            } else if (total.signum() > 0) {
+                int remaining = count.multiply(BigInteger.valueOf(100))
+                    .divide(total).intValue();
+                setProgress(Math.max(0, Math.min(100, 100 - remaining)));
+            }
+            
+            return !cancellation.isCancelled();
+        }
+        
+        @Override
+        protected void done()
+        {
+            solveDone(this);
+        }
+    }
+    
     private boolean isUndoable()
     {
         return !solvedCells.isEmpty() || !undoRecord.isEmpty();
@@ -418,6 +572,8 @@ public class FutoshikiPanel extends JPanel implements FocusListener
     
     private void recordHistory()
     {
+        cancelSolve();
+        
         if (undoRecord.size() >= MAX_UNDO) {
             undoRecord.remove(0);
         }
@@ -427,6 +583,8 @@ public class FutoshikiPanel extends JPanel implements FocusListener
     
     void undo()
     {
+        cancelSolve();
+        
         if (!solvedCells.isEmpty()) {
             clearSolutionCells();
             changed();
@@ -551,8 +709,8 @@ public class FutoshikiPanel extends JPanel implements FocusListener
         {
             char c = e.getKeyChar();
             
-            int n = Character.digit(c, 10);
-            if (n == 0) {
+            int n = FutoshikiPrinter.value(c);
+            if (c == '0') {
                 numberCleared();
             } else if (n > 0) {
                 numberTyped(n);
@@ -584,28 +742,6 @@ public class FutoshikiPanel extends JPanel implements FocusListener
         }
     }
     
-    private class SolutionInProgress implements Solver.SolutionTarget
-    {
-        Futoshiki solution;
-        boolean multipleSolutions = false;
-        
-        public boolean solution(Futoshiki f)
-        {
-            if (solution == null) {
-                solution = f;
-                return true;
-            } else {
-                multipleSolutions = true;
-                return false;
-            }
-        }
-        
-        public boolean remainingPossibilities(BigInteger count)
-        {
-            return true;
-        }
-    }
-    
     private enum EditState
     {
         DESIGNED,
@@ -18,11 +18,10 @@
 
 package org.kafsemo.futoshiki;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 
 /**
  * A class to convert puzzle state to, and from, a textual representation.
@@ -31,144 +30,168 @@ import java.util.Map;
  */
 public class FutoshikiPrinter
 {
+    /**
+     * The symbols for values from 1 upwards: digits, then upper and lower
+     * case letters, then enough punctuation for the largest puzzles.
+     */
+    static final String DIGITS =
+        "123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz@#$";
+    
+    /* The value of each ASCII symbol, or zero */
+    private static final byte[] VALUES = new byte[128];
+    
+    static
+    {
+        for (int i = 0; i < DIGITS.length(); i++) {
+            VALUES[DIGITS.charAt(i)] = (byte) (i + 1);
+        }
+    }
+    
+    /**
+     * @return the symbol for a value from 1 to {@link Grid#MAX_LENGTH}
+     */
+    public static char digit(int v)
+    {
+        return DIGITS.charAt(v - 1);
+    }
+    
+    /**
+     * @return the value for a symbol, or zero if it isn't one
+     */
+    public static int value(char c)
+    {
+        return (c < VALUES.length) ? VALUES[c] : 0;
+    }
+    
     static int stringLength(Futoshiki f)
     {
         return f.getLength() * 2 - 1;
     }
     
-    public static String toString(Futoshiki f)
+    /**
+     * @return the number of characters in a printed puzzle of this size,
+     * including the newline ending each line
+     */
+    public static int printedLength(int length)
     {
-        final int stringLength = stringLength(f);
+        int stringLength = length * 2 - 1;
         
-        String[][] caa = new String[stringLength][stringLength];
-
-        /* Data */
-        for (int row = 1; row <= f.getLength(); row++) {
-            for (int column = 1; column <= f.getLength(); column++) {
+        return stringLength * (stringLength + 1);
+    }
+    
+    /**
+     * The character at a position in the printed form: values where both
+     * line and position are even, and symbols for the rules between them.
+     * Only rules between neighbouring cells can be shown.
+     */
+    private static char charAt(Futoshiki f, int line, int position)
+    {
+        int row = line / 2 + 1, column = position / 2 + 1;
+        
+        if ((line & 1) == 0) {
+            if ((position & 1) == 0) {
                 int v = f.get(column, row);
-                
-                String s;
-                if (v != 0) {
-                    s = Integer.toString(v);
-                } else {
-                    s = null; //" ";
+                return (v != 0) ? digit(v) : ' ';
+            } else {
+                switch (f.ruleBetween(column, row, column + 1, row)) {
+                case 1:
+                    return '>';
+                case -1:
+                    return '<';
+                default:
+                    return ' ';
                 }
-                caa[(row - 1) * 2][(column - 1) * 2] = s;
             }
-        }
-
-        /* Rules */
-        // XXX
-        
-        for (GtRule r : f.getRules()) {
-            int row = r.rowA + r.rowB - 2,
-                column = r.columnA + r.columnB - 2;
-
-            String s;
-            /* Choose the symbol */
-            if (r.rowB > r.rowA) {
-                s = "v";
-            } else if (r.rowB < r.rowA) {
-                s = "^";
-            } else if (r.columnB > r.columnA) {
-                s = ">";
-            } else {
-                s = "<";
+        } else if ((position & 1) == 0) {
+            switch (f.ruleBetween(column, row, column, row + 1)) {
+            case 1:
+                return 'v';
+            case -1:
+                return '^';
+            default:
+                return ' ';
             }
-            caa[row][column] = s;
+        } else {
+            return ' ';
         }
+    }
+    
+    /**
+     * Print a puzzle, a character at a time, with nothing allocated
+     * along the way.
+     */
+    public static void print(Futoshiki f, Appendable out) throws IOException
+    {
+        final int stringLength = stringLength(f);
         
-        StringBuilder sb = new StringBuilder(9 * 9 + 9);
-        
-        for (String[] row : caa) {
-            for (String c : row) {
-                if (c != null)
-                    sb.append(c);
-                else
-                    sb.append(" ");
+        for (int line = 0; line < stringLength; line++) {
+            for (int position = 0; position < stringLength; position++) {
+                out.append(charAt(f, line, position));
             }
-            sb.append("\n");
+            out.append('\n');
         }
-        
-        return sb.toString();
     }
-
-    public static Futoshiki parse(String s)
+    
+    /**
+     * Print a puzzle into a buffer, leaving its position after the puzzle.
+     * 
+     * @throws BufferOverflowException if there isn't room for all of the
+     * puzzle, in which case nothing is written
+     */
+    public static void print(Futoshiki f, CharBuffer out)
     {
-        s = s.replaceAll("\r\n", "\n");
-
-        String[] lines = s.split("[\r\n]", -1);
-
-        Map<CellPos, Integer> filledCells = new HashMap<CellPos, Integer>();
-        Collection<GtRule> rules = new ArrayList<GtRule>();
-
-        int knownSize = 0;
+        final int stringLength = stringLength(f);
         
-        /* Number lines */
-        for (int i = 0; i < lines.length; i += 2) {
-            int row = (i / 2) + 1;
-            knownSize = Math.max(knownSize, row);
-            char[] ca = lines[i].toCharArray();
-            for (int j = 0; j < ca.length; j++) {
-                int column = (j / 2) + 1;
-                knownSize = Math.max(knownSize, column);
-                char c = ca[j];
-                if (j % 2 == 0) {
-                    int v = Character.digit(c, 10);
-                    if (v >= 0) {
-                        filledCells.put(new CellPos(column, row),
-                                        Integer.valueOf(v));
-                    }
-                } else {
-                    if (c == '<') {
-                        rules.add(new GtRule(column + 1, row, column, row));
-                        knownSize = Math.max(knownSize, column + 1);
-                    } else if (c == '>') {
-                        rules.add(new GtRule(column, row, column + 1, row));
-                        knownSize = Math.max(knownSize, column + 1);
-                    }
-                }
-            }
+        if (out.remaining() < printedLength(f.getLength())) {
+            throw new BufferOverflowException();
         }
         
-        /* Rule lines */
-        for (int i = 1; i < lines.length; i += 2) {
-            char[] ca = lines[i].toCharArray();
-            for (int j = 0; j < ca.length; j += 2) {
-                int column = (j / 2) + 1;
-                int row = (i / 2) + 1;
-                char c = ca[j];
-
-                if (c == '^') {
-                    rules.add(new GtRule(column, row + 1, column, row));
-                    knownSize = Math.max(knownSize, row + 1);
-                } else if (c == 'v' || c == 'V') {
-                    rules.add(new GtRule(column, row, column, row + 1));
-                    knownSize = Math.max(knownSize, row + 1);
-                }
+        for (int line = 0; line < stringLength; line++) {
+            for (int position = 0; position < stringLength; position++) {
+                out.put(charAt(f, line, position));
             }
+            out.put('\n');
         }
-
-        /* How big must the puzzle be? */
-        int size = 1;
-
-        size = Math.max(size, knownSize);
+    }
+    
+    /**
+     * Print a puzzle into a buffer as ASCII, leaving its position after
+     * the puzzle.
+     * 
+     * @throws BufferOverflowException if there isn't room for all of the
+     * puzzle, in which case nothing is written
+     */
+    public static void print(Futoshiki f, ByteBuffer out)
+    {
+        final int stringLength = stringLength(f);
         
-        if (filledCells.size() > 0) {
-            size = Math.max(size, Collections.max(filledCells.values()));
+        if (out.remaining() < printedLength(f.getLength())) {
+            throw new BufferOverflowException();
         }
-
-        /* Fill it in */
-        Futoshiki f = new Futoshiki(size);
         
-        for (CellPos p : filledCells.keySet()) {
-            f.set(p.column, p.row, filledCells.get(p));
+        for (int line = 0; line < stringLength; line++) {
+            for (int position = 0; position < stringLength; position++) {
+                out.put((byte) charAt(f, line, position));
+            }
+            out.put((byte) '\n');
         }
+    }
+    
+    public static String toString(Futoshiki f)
+    {
+        CharBuffer cb = CharBuffer.allocate(printedLength(f.getLength()));
         
-        for (GtRule gtr : rules) {
-            f.addGtRule(gtr.columnA, gtr.rowA, gtr.columnB, gtr.rowB);
-        }
+        print(f, cb);
         
-        return f;
+        return new String(cb.array());
+    }
+
+    /**
+     * Parse a single puzzle, of the size of the largest row, column or
+     * value it mentions.
+     */
+    public static Futoshiki parse(String s)
+    {
+        return PuzzleReader.parseWhole(CharBuffer.wrap(s));
     }
 }
@@ -0,0 +1,420 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.kafsemo.futoshiki.Solver.AllDifferent;
+import org.kafsemo.futoshiki.Solver.Progress;
+import org.kafsemo.futoshiki.Solver.SolutionTarget;
+
+/**
+ * Creates puzzles with exactly one solution. A random Latin square is
+ * chosen as the solution; while some other solution remains, a rule or
+ * a given that rules it out is added; then clues are taken away again in
+ * random order, wherever the solution stays unique without them.
+ * <p>
+ * Every check is a search for a solution other than the chosen one, and
+ * when a clue is taken away that search only needs to cover the other
+ * solutions the clue was ruling out: those with a different value in a
+ * given's cell, or with a rule's cells the other way round. The space for
+ * searching is kept from one check to the next, and the rules are only
+ * analysed again when they change.
+ * <p>
+ * The same seed gives the same puzzles.
+ * 
+ * @author Joseph Walton
+ */
+public class Generator
+{
+    private static final CellPos[] CELLPOS_ARRAY = {};
+    
+    private final Random random;
+    
+    private double ruleShare = 0.5;
+    
+    public Generator(Random random)
+    {
+        this.random = random;
+    }
+    
+    public Generator(long seed)
+    {
+        this(new Random(seed));
+    }
+    
+    /**
+     * Choose how often a rule, rather than a given, is added to rule out
+     * another solution. Rules are only used where one would do so.
+     * 
+     * @param ruleShare from 0, for givens alone, to 1 for rules wherever
+     * possible
+     */
+    public void setRuleShare(double ruleShare)
+    {
+        if (ruleShare < 0 || ruleShare > 1) {
+            throw new IllegalArgumentException("Rule share must be 0 to 1: "
+                    + ruleShare);
+        }
+        
+        this.ruleShare = ruleShare;
+    }
+    
+    public double getRuleShare()
+    {
+        return ruleShare;
+    }
+    
+    /**
+     * @return a new puzzle of this size with a single solution
+     */
+    public Futoshiki generate(int length)
+    {
+        return generate(latinSquare(length));
+    }
+    
+    /**
+     * @param solution a complete, valid grid
+     * @return a new puzzle with that grid as its only solution
+     */
+    public Futoshiki generate(Futoshiki solution)
+    {
+        if (!solution.isFull() || !solution.isValid()) {
+            throw new IllegalArgumentException("Not a complete solution");
+        }
+        
+        Checker checker = new Checker(solution);
+        
+        checker.addClues();
+        checker.removeClues();
+        
+        return checker.puzzle;
+    }
+    
+    /**
+     * @return a random complete grid of this size, with each value once in
+     * every row and every column
+     */
+    public Futoshiki latinSquare(int length)
+    {
+        Futoshiki f = new Futoshiki(length);
+        Possibilities poss = new Possibilities(length);
+        Propagator propagator = Solver.propagator(new RuleGraph(f),
+                AllDifferent.MATCHING);
+        
+        poss.startTrail();
+        
+        if (!fill(f, f.blankCells().toArray(CELLPOS_ARRAY), 0, poss,
+                propagator)) {
+            throw new IllegalStateException("No Latin square of size "
+                    + length);
+        }
+        
+        return f;
+    }
+    
+    /**
+     * Fill in the blanks, trying the values for each in random order.
+     * 
+     * @return false if there is no way to fill them
+     */
+    private boolean fill(Futoshiki f, CellPos[] blank, int nb,
+            Possibilities poss, Propagator propagator)
+    {
+        if (nb >= blank.length) {
+            return true;
+        }
+        
+        Search.moveBlankWithLeastPossibilitiesIntoPlace(blank, nb, poss);
+        
+        CellPos p = blank[nb];
+        long candidates = poss.mask(p.column, p.row);
+        
+        while (candidates != 0) {
+            int v = nth(candidates, random.nextInt(Long.bitCount(candidates)));
+            candidates &= ~Possibilities.bit(v);
+            
+            int mark = poss.mark();
+            poss.use(p.column, p.row, v);
+            
+            if (propagator.propagate(poss)) {
+                f.set(p.column, p.row, v);
+                if (fill(f, blank, nb + 1, poss, propagator)) {
+                    return true;
+                }
+                f.clear(p.column, p.row);
+            }
+            
+            poss.undo(mark);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * @return the value of the <code>n</code>th set bit, counting from zero
+     */
+    private static int nth(long mask, int n)
+    {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        
+        return Possibilities.lowest(mask);
+    }
+    
+    /**
+     * A puzzle being built up for a single solution, and the state for
+     * checking whether any other solution remains.
+     */
+    private class Checker
+    {
+        private final Futoshiki solution;
+        private final int length;
+        
+        final Futoshiki puzzle;
+        
+        /* The clues, in the order they were added */
+        private final List<CellPos> givens = new ArrayList<CellPos>();
+        private final List<GtRule> rules = new ArrayList<GtRule>();
+        
+        private final Possibilities poss;
+        
+        /* Kept until the rules change */
+        private Propagator propagator;
+        
+        Checker(Futoshiki solution)
+        {
+            this.solution = solution;
+            this.length = solution.getLength();
+            this.puzzle = new Futoshiki(length);
+            this.poss = new Possibilities(length);
+        }
+        
+        /**
+         * Add clues until no other solution is left, each ruling out the
+         * last other solution found.
+         */
+        void addClues()
+        {
+            Futoshiki other;
+            
+            while ((other = findOther(puzzle, null, 0)) != null) {
+                List<CellPos> differing = new ArrayList<CellPos>();
+                
+                for (int row = 1; row <= length; row++) {
+                    for (int column = 1; column <= length; column++) {
+                        if (other.get(column, row) != solution.get(column, row)) {
+                            differing.add(new CellPos(column, row));
+                        }
+                    }
+                }
+                
+                CellPos p = differing.get(random.nextInt(differing.size()));
+                
+                GtRule r = null;
+                if (random.nextDouble() < ruleShare) {
+                    r = ruleAgainst(other, p);
+                }
+                
+                if (r != null) {
+                    puzzle.addGtRule(r.columnA, r.rowA, r.columnB, r.rowB);
+                    rules.add(r);
+                    propagator = null;
+                } else {
+                    puzzle.set(p.column, p.row, solution.get(p.column, p.row));
+                    givens.add(p);
+                }
+            }
+        }
+        
+        /**
+         * @return a rule between this cell and a neighbour, followed by
+         * the solution but broken by the other, or <code>null</code> if
+         * there is none
+         */
+        private GtRule ruleAgainst(Futoshiki other, CellPos p)
+        {
+            List<GtRule> candidates = new ArrayList<GtRule>(4);
+            
+            int[][] offsets = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+            
+            for (int[] o : offsets) {
+                int column = p.column + o[0], row = p.row + o[1];
+                
+                if (column < 1 || column > length || row < 1 || row > length) {
+                    continue;
+                }
+                
+                boolean greater = solution.get(p.column, p.row)
+                    > solution.get(column, row);
+                boolean otherGreater = other.get(p.column, p.row)
+                    > other.get(column, row);
+                
+                if (greater == otherGreater
+                        || puzzle.ruleBetween(p.column, p.row, column, row) != 0)
+                {
+                    continue;
+                }
+                
+                if (greater) {
+                    candidates.add(new GtRule(p.column, p.row, column, row));
+                } else {
+                    candidates.add(new GtRule(column, row, p.column, p.row));
+                }
+            }
+            
+            if (candidates.isEmpty()) {
+                return null;
+            }
+            
+            return candidates.get(random.nextInt(candidates.size()));
+        }
+        
+        /**
+         * Take away each clue in turn, in random order, and leave it out
+         * if the solution stays unique.
+         */
+        void removeClues()
+        {
+            List<Object> clues = new ArrayList<Object>(givens.size()
+                    + rules.size());
+            clues.addAll(givens);
+            clues.addAll(rules);
+            Collections.shuffle(clues, random);
+            
+            for (Object clue : clues) {
+                if (clue instanceof CellPos) {
+                    CellPos p = (CellPos) clue;
+                    int v = solution.get(p.column, p.row);
+                    
+                    puzzle.clear(p.column, p.row);
+                    
+                    /* Any other solution has a different value here */
+                    if (findOther(puzzle, p, v) != null) {
+                        puzzle.set(p.column, p.row, v);
+                    }
+                } else {
+                    GtRule r = (GtRule) clue;
+                    
+                    /* Any other solution has these cells the other way round */
+                    Futoshiki reversed = puzzle.clone();
+                    reversed.removeRule(r);
+                    reversed.addGtRule(r.columnB, r.rowB, r.columnA, r.rowA);
+                    
+                    propagator = null;
+                    if (findOther(reversed, null, 0) == null) {
+                        puzzle.removeRule(r);
+                    }
+                    
+                    /* Analysed for the reversed rules; no use for the puzzle */
+                    propagator = null;
+                }
+            }
+        }
+        
+        /**
+         * Search for a solution to a puzzle other than the chosen one.
+         * 
+         * @param excluded a cell that must not take the value
+         * <code>v</code>, or <code>null</code>
+         * @return another solution, or <code>null</code> if there is none
+         */
+        private Futoshiki findOther(Futoshiki f, CellPos excluded, int v)
+        {
+            f = f.clone();
+            
+            if (propagator == null) {
+                propagator = Solver.propagator(new RuleGraph(f),
+                        AllDifferent.MATCHING);
+            }
+            
+            poss.reset();
+            
+            if (!poss.use(f, propagator)) {
+                return null;
+            }
+            
+            if (excluded != null) {
+                if (!poss.restrict(poss.idx(excluded.column, excluded.row),
+                        ~Possibilities.bit(v))
+                        || !propagator.propagate(poss)) {
+                    poss.clearQueue();
+                    return null;
+                }
+            }
+            
+            poss.startTrail();
+            
+            OtherSolutionTarget target = new OtherSolutionTarget(solution);
+            new Search(target, f, f.blankCells().toArray(CELLPOS_ARRAY), poss,
+                    propagator, Progress.NONE).solve();
+            
+            return target.other;
+        }
+    }
+    
+    /**
+     * Stop at the first solution that isn't the known one.
+     */
+    private static class OtherSolutionTarget implements SolutionTarget
+    {
+        private final Futoshiki known;
+        
+        Futoshiki other;
+        
+        OtherSolutionTarget(Futoshiki known)
+        {
+            this.known = known;
+        }
+        
+        public boolean solution(Futoshiki f)
+        {
+            if (sameValues(f, known)) {
+                return true;
+            }
+            
+            other = f;
+            return false;
+        }
+        
+        public boolean remainingPossibilities(BigInteger count)
+        {
+            return true;
+        }
+    }
+    
+    private static boolean sameValues(Futoshiki a, Futoshiki b)
+    {
+        for (int row = 1; row <= a.getLength(); row++) {
+            for (int column = 1; column <= a.getLength(); column++) {
+                if (a.get(column, row) != b.get(column, row)) {
+                    return false;
+                }
+            }
+        }
+        
+        return true;
+    }
+}
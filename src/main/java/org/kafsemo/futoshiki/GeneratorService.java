@@ -0,0 +1,579 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a stock of fresh puzzles ready to hand out, generating them on a
+ * pool of threads in the background. Puzzles are kept in a bounded queue
+ * for each bucket of size and difficulty; the workers always make puzzles
+ * for the emptiest bucket, and stop once every bucket is full. Taking a
+ * puzzle sets them going again.
+ * <p>
+ * The difficulty of a puzzle can't be chosen in advance, so each one is
+ * graded once it's made and goes to the bucket for its size and grade.
+ * Puzzles with no bucket waiting for them are discarded. A bucket whose
+ * grade the workers keep missing is starved: after too many misses in a
+ * row it is passed over, so that workers stop once every other bucket is
+ * full rather than trying for it forever. A puzzle that happens to fill
+ * it, or starting the service again, gives it another chance.
+ * 
+ * @author Joseph Walton
+ */
+public class GeneratorService
+{
+    private final ExecutorService executor;
+    private final int threads;
+    private final Grader grader;
+    
+    /* Seeds for each worker's generator */
+    private final Random seeds;
+    
+    private final List<Bucket> buckets = new ArrayList<Bucket>();
+    
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private boolean started;
+    private volatile boolean running;
+    
+    private final AtomicLong discarded = new AtomicLong(),
+        failed = new AtomicLong(),
+        generatingNanos = new AtomicLong();
+    private volatile long startNanos;
+    private volatile RuntimeException lastFailure;
+    
+    private volatile int missLimit = DEFAULT_MISS_LIMIT;
+    
+    /**
+     * How many puzzles in a row may be made for a bucket without one
+     * going into it, unless set otherwise.
+     */
+    public static final int DEFAULT_MISS_LIMIT = 200;
+    
+    /**
+     * Create a service where every puzzle has the same difficulty, zero.
+     */
+    public GeneratorService(ExecutorService executor, int threads, long seed)
+    {
+        this(executor, threads, seed, new Grader() {
+            public int grade(Futoshiki puzzle)
+            {
+                return 0;
+            }
+        });
+    }
+    
+    /**
+     * @param executor where to generate puzzles; it is not shut down
+     * @param threads how many workers to run at once
+     * @param seed the seed for the workers' own seeds
+     * @param grader how to find the difficulty of each puzzle made
+     */
+    public GeneratorService(ExecutorService executor, int threads, long seed,
+            Grader grader)
+    {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive: "
+                    + threads);
+        }
+        
+        this.executor = executor;
+        this.threads = threads;
+        this.seeds = new Random(seed);
+        this.grader = grader;
+    }
+    
+    /**
+     * Keep a stock of puzzles of this size and difficulty. Buckets must
+     * all be added before the service starts.
+     * 
+     * @param capacity the most puzzles to keep ready
+     */
+    public synchronized Bucket addBucket(int length, int difficulty,
+            int capacity)
+    {
+        if (started) {
+            throw new IllegalStateException("Already started");
+        }
+        
+        if (findBucket(length, difficulty) != null) {
+            throw new IllegalArgumentException("Already a bucket for size "
+                    + length + ", difficulty " + difficulty);
+        }
+        
+        Bucket b = new Bucket(length, difficulty, capacity);
+        buckets.add(b);
+        
+        return b;
+    }
+    
+    private Bucket findBucket(int length, int difficulty)
+    {
+        for (Bucket b : buckets) {
+            if (b.length == length && b.difficulty == difficulty) {
+                return b;
+            }
+        }
+        
+        return null;
+    }
+    
+    private Bucket bucket(int length, int difficulty)
+    {
+        Bucket b = findBucket(length, difficulty);
+        
+        if (b == null) {
+            throw new IllegalArgumentException("No bucket for size " + length
+                    + ", difficulty " + difficulty);
+        }
+        
+        return b;
+    }
+    
+    /**
+     * Choose how many puzzles in a row may be made for a bucket, or fail,
+     * without one going into it before it is starved.
+     */
+    public void setMissLimit(int missLimit)
+    {
+        if (missLimit < 1) {
+            throw new IllegalArgumentException("Miss limit must be positive: "
+                    + missLimit);
+        }
+        
+        this.missLimit = missLimit;
+    }
+    
+    public int getMissLimit()
+    {
+        return missLimit;
+    }
+    
+    public Collection<Bucket> getBuckets()
+    {
+        return Collections.unmodifiableList(buckets);
+    }
+    
+    /**
+     * Start filling the buckets, or start again after being stopped.
+     * 
+     * @throws RejectedExecutionException if the executor won't take the
+     * workers, in which case the service stops
+     */
+    public synchronized void start()
+    {
+        if (!started) {
+            started = true;
+            startNanos = System.nanoTime();
+        }
+        
+        if (!running) {
+            running = true;
+            
+            for (Bucket b : buckets) {
+                b.misses.set(0);
+            }
+            
+            startWorkers();
+        }
+    }
+    
+    /**
+     * Stop generating. Workers finish the puzzles they're making, and
+     * puzzles already made can still be taken.
+     */
+    public void stop()
+    {
+        running = false;
+    }
+    
+    /**
+     * @return whether the service has been started, and not stopped since
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+    
+    /**
+     * Start more workers, up to the limit, while any bucket has room. If
+     * the executor refuses one, perhaps because it was shut down, stop.
+     * 
+     * @throws RejectedExecutionException if the executor refused a worker
+     */
+    private void startWorkers()
+    {
+        int active;
+        
+        while (running && neediest() != null
+                && (active = activeWorkers.get()) < threads)
+        {
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                long seed;
+                synchronized (seeds) {
+                    seed = seeds.nextLong();
+                }
+                try {
+                    executor.execute(new Worker(new Generator(seed)));
+                } catch (RejectedExecutionException ree) {
+                    activeWorkers.decrementAndGet();
+                    running = false;
+                    lastFailure = ree;
+                    throw ree;
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return the bucket with the least of its capacity filled, not
+     * counting starved buckets, or <code>null</code> if they're all full
+     */
+    private Bucket neediest()
+    {
+        Bucket neediest = null;
+        double least = 1;
+        
+        for (Bucket b : buckets) {
+            if (b.misses.get() >= missLimit) {
+                continue;
+            }
+            
+
+            double filled = (double) b.queue.size() / b.capacity;
+            
+            if (filled < least) {
+                neediest = b;
+                least = filled;
+            }
+        }
+        
+        return neediest;
+    }
+    
+    /**
+     * Take a puzzle, waiting for one if there are none ready.
+     * 
+     * @throws IllegalArgumentException if there is no such bucket
+     */
+    public Futoshiki take(int length, int difficulty)
+        throws InterruptedException
+    {
+        Bucket b = bucket(length, difficulty);
+        
+        Futoshiki f = b.queue.take();
+        taken(b);
+        
+        return f;
+    }
+    
+    /**
+     * Take a puzzle if one is ready within the time given.
+     * 
+     * @return the puzzle, or <code>null</code> if none was ready
+     * @throws IllegalArgumentException if there is no such bucket
+     */
+    public Futoshiki poll(int length, int difficulty, long timeout,
+            TimeUnit unit) throws InterruptedException
+    {
+        Bucket b = bucket(length, difficulty);
+        
+        Futoshiki f = b.queue.poll(timeout, unit);
+        if (f != null) {
+            taken(b);
+        }
+        
+        return f;
+    }
+    
+    /**
+     * Take a puzzle if one is ready now.
+     * 
+     * @return the puzzle, or <code>null</code> if none was ready
+     * @throws IllegalArgumentException if there is no such bucket
+     */
+    public Futoshiki poll(int length, int difficulty)
+    {
+        Bucket b = bucket(length, difficulty);
+        
+        Futoshiki f = b.queue.poll();
+        if (f != null) {
+            taken(b);
+        }
+        
+        return f;
+    }
+    
+    private void taken(Bucket b)
+    {
+        b.taken.incrementAndGet();
+        
+        try {
+            startWorkers();
+        } catch (RejectedExecutionException ree) {
+            /* The puzzle was still taken; the service has stopped */
+        }
+    }
+    
+    /**
+     * @return how many workers are generating puzzles
+     */
+    public int getActiveWorkers()
+    {
+        return activeWorkers.get();
+    }
+    
+    /**
+     * @return how many puzzles have gone into buckets
+     */
+    public long getGenerated()
+    {
+        long total = 0;
+        
+        for (Bucket b : buckets) {
+            total += b.getGenerated();
+        }
+        
+        return total;
+    }
+    
+    /**
+     * @return how many puzzles were made with no room for them
+     */
+    public long getDiscarded()
+    {
+        return discarded.get();
+    }
+    
+    /**
+     * @return how many puzzles couldn't be made or graded, because the
+     * generator or the grader threw an exception
+     */
+    public long getFailed()
+    {
+        return failed.get();
+    }
+    
+    /**
+     * @return the most recent exception from the generator, the grader
+     * or the executor, or <code>null</code> if there has been none
+     */
+    public RuntimeException getLastFailure()
+    {
+        return lastFailure;
+    }
+    
+    /**
+     * @return whether the workers have given up on a bucket for now
+     */
+    public boolean isStarved(Bucket b)
+    {
+        return b.misses.get() >= missLimit;
+    }
+    
+    /**
+     * @return how many puzzles are ready to take, over all buckets
+     */
+    public int getBacklog()
+    {
+        int total = 0;
+        
+        for (Bucket b : buckets) {
+            total += b.getBacklog();
+        }
+        
+        return total;
+    }
+    
+    /**
+     * @return the puzzles that have gone into buckets per second since the
+     * service started
+     */
+    public double getThroughput()
+    {
+        if (startNanos == 0) {
+            return 0;
+        }
+        
+        long elapsed = System.nanoTime() - startNanos;
+        
+        return (elapsed > 0) ? getGenerated() * 1e9 / elapsed : 0;
+    }
+    
+    /**
+     * @return the mean time each puzzle took one worker to make and grade,
+     * kept, discarded or failed, in nanoseconds
+     */
+    public long getMeanGenerationNanos()
+    {
+        long made = getGenerated() + getDiscarded() + getFailed();
+        
+        return (made > 0) ? generatingNanos.get() / made : 0;
+    }
+    
+    private class Worker implements Runnable
+    {
+        private final Generator generator;
+        
+        Worker(Generator generator)
+        {
+            this.generator = generator;
+        }
+        
+        public void run()
+        {
+            try {
+                Bucket b;
+                
+                while (running && (b = neediest()) != null) {
+                    long start = System.nanoTime();
+                    
+                    Futoshiki f;
+                    Bucket graded;
+                    
+                    try {
+                        f = generator.generate(b.length);
+                        graded = findBucket(b.length, grader.grade(f));
+                    } catch (RuntimeException re) {
+                        failed.incrementAndGet();
+                        lastFailure = re;
+                        b.misses.incrementAndGet();
+                        continue;
+                    } finally {
+                        generatingNanos.addAndGet(System.nanoTime() - start);
+                    }
+                    
+                    if (graded != null && graded.queue.offer(f)) {
+                        graded.generated.incrementAndGet();
+                        graded.misses.set(0);
+                    } else {
+                        discarded.incrementAndGet();
+                    }
+                    
+                    if (graded != b) {
+                        b.misses.incrementAndGet();
+                    }
+                }
+            } finally {
+                activeWorkers.decrementAndGet();
+            }
+            
+            /* In case a puzzle was taken as this worker gave up */
+            try {
+                startWorkers();
+            } catch (RejectedExecutionException ree) {
+                /* Already stopped, and recorded */
+            }
+        }
+    }
+    
+    /**
+     * A stock of puzzles of one size and difficulty.
+     */
+    public static class Bucket
+    {
+        private final int length, difficulty, capacity;
+        private final BlockingQueue<Futoshiki> queue;
+        private final AtomicLong generated = new AtomicLong(),
+            taken = new AtomicLong();
+        
+        /* Puzzles made for this bucket in a row that went elsewhere */
+        private final AtomicInteger misses = new AtomicInteger();
+        
+        Bucket(int length, int difficulty, int capacity)
+        {
+            if (capacity < 1) {
+                throw new IllegalArgumentException(
+                        "Capacity must be positive: " + capacity);
+            }
+            
+            if (length < 1 || length > Grid.MAX_LENGTH) {
+                throw new IllegalArgumentException("Size must be 1 to "
+                        + Grid.MAX_LENGTH + ": " + length);
+            }
+            
+            this.length = length;
+            this.difficulty = difficulty;
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<Futoshiki>(capacity);
+        }
+        
+        public int getLength()
+        {
+            return length;
+        }
+        
+        public int getDifficulty()
+        {
+            return difficulty;
+        }
+        
+        public int getCapacity()
+        {
+            return capacity;
+        }
+        
+        /**
+         * @return how many puzzles are ready to take
+         */
+        public int getBacklog()
+        {
+            return queue.size();
+        }
+        
+        /**
+         * @return how many puzzles have gone into this bucket
+         */
+        public long getGenerated()
+        {
+            return generated.get();
+        }
+        
+        /**
+         * @return how many puzzles have been taken from this bucket
+         */
+        public long getTaken()
+        {
+            return taken.get();
+        }
+    }
+    
+    /**
+     * Finds the difficulty of a generated puzzle.
+     */
+    public interface Grader
+    {
+        /**
+         * Called from the worker threads.
+         */
+        int grade(Futoshiki puzzle);
+    }
+}
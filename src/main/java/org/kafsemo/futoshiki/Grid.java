@@ -19,18 +19,22 @@
 package org.kafsemo.futoshiki;
 
 /**
- * A square grid of between one and nine squares across.
+ * A square grid of between one and {@link #MAX_LENGTH} squares across.
  * 
  * @author Joseph Walton
  */
 public class Grid
 {
+    /** The largest size, with one bit for each value in a long */
+    public static final int MAX_LENGTH = 64;
+    
     protected final int length;
 
     public Grid(int length)
     {
-        if ((length < 1) || (length > 9)) {
-            throw new IllegalArgumentException("Size must be 1 to 9: " + length);
+        if ((length < 1) || (length > MAX_LENGTH)) {
+            throw new IllegalArgumentException("Size must be 1 to "
+                    + MAX_LENGTH + ": " + length);
         }
         
         this.length = length;
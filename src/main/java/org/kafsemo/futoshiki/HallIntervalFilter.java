@@ -0,0 +1,95 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+import java.util.Arrays;
+
+/**
+ * Bounds reasoning for a row or column. When the cells whose values all
+ * lie within an interval exactly fill it, that interval is a Hall
+ * interval and its values are taken away from every other cell; more
+ * such cells than values means there is no solution.
+ * 
+ * @author Joseph Walton
+ */
+class HallIntervalFilter implements AllDifferentFilter
+{
+    private final int[] mins, maxs, countByMax;
+    
+    HallIntervalFilter(int length)
+    {
+        mins = new int[length];
+        maxs = new int[length];
+        countByMax = new int[length + 1];
+    }
+    
+    public boolean filter(Possibilities poss, int[] cells)
+    {
+        final int n = cells.length;
+        
+        for (int k = 0; k < n; k++) {
+            long m = poss.mask(cells[k]);
+            if (m == 0) {
+                return false;
+            }
+            mins[k] = Possibilities.lowest(m);
+            maxs[k] = Possibilities.highest(m);
+        }
+        
+        /*
+         * Bounds may only tighten while this runs. Stale bounds place
+         * fewer cells inside each interval, so anything found remains true.
+         */
+        for (int lo = 1; lo <= n; lo++) {
+            Arrays.fill(countByMax, 0);
+            for (int k = 0; k < n; k++) {
+                if (mins[k] >= lo) {
+                    countByMax[maxs[k]]++;
+                }
+            }
+            
+            int inside = 0;
+            
+            for (int hi = lo; hi <= n; hi++) {
+                inside += countByMax[hi];
+                
+                int size = hi - lo + 1;
+                
+                if (inside > size) {
+                    return false;
+                }
+                
+                if (inside == size && size < n) {
+                    long outside = ~(Possibilities.allValues(hi)
+                            & ~Possibilities.allValues(lo - 1));
+                    
+                    for (int k = 0; k < n; k++) {
+                        if (mins[k] < lo || maxs[k] > hi) {
+                            if (!poss.restrict(cells[k], outside)) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+/**
+ * Thrown when a count is stopped by a limit before it is complete, and
+ * so has no answer.
+ * 
+ * @author Joseph Walton
+ */
+public class LimitReachedException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+    
+    private final transient Outcome outcome;
+    
+    LimitReachedException(Outcome outcome)
+    {
+        super("Search stopped before it was complete: " + outcome);
+        this.outcome = outcome;
+    }
+    
+    /**
+     * @return why the search stopped, and how much work it did
+     */
+    public Outcome getOutcome()
+    {
+        return outcome;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+import java.util.Arrays;
+
+/**
+ * Full reasoning for a row or column, after Régin. Cells are matched
+ * with distinct values; a value can then be kept for a cell only if it
+ * is the cell's match or if swapping to it could be balanced by moving
+ * other cells around a cycle of alternatives. This finds naked and
+ * hidden sets of any size, including hidden singles.
+ * 
+ * @author Joseph Walton
+ */
+class MatchingFilter implements AllDifferentFilter
+{
+    private final int length;
+    
+    private final long[] cellMasks;
+    
+    /* The value bit matched to each cell, and the cell for each value */
+    private final int[] matchedValue, matchedCell;
+    
+    private final int[] visited;
+    private int stamp;
+    
+    /* Tarjan's algorithm, over cells 0..n-1 then values n..2n-1 */
+    private final int[] index, low, component, stack;
+    private final boolean[] onStack;
+    private int counter, top, components;
+    
+    MatchingFilter(int length)
+    {
+        this.length = length;
+        
+        cellMasks = new long[length];
+        matchedValue = new int[length];
+        matchedCell = new int[length];
+        visited = new int[length];
+        
+        index = new int[length * 2];
+        low = new int[length * 2];
+        component = new int[length * 2];
+        stack = new int[length * 2];
+        onStack = new boolean[length * 2];
+    }
+    
+    public boolean filter(Possibilities poss, int[] cells)
+    {
+        for (int k = 0; k < length; k++) {
+            cellMasks[k] = poss.mask(cells[k]);
+            if (cellMasks[k] == 0) {
+                return false;
+            }
+        }
+        
+        /* Find a complete matching, or fail */
+        Arrays.fill(matchedValue, -1);
+        Arrays.fill(matchedCell, -1);
+        
+        for (int k = 0; k < length; k++) {
+            stamp++;
+            if (!augment(k)) {
+                return false;
+            }
+        }
+        
+        /* Find the cycles of alternatives */
+        Arrays.fill(index, -1);
+        Arrays.fill(onStack, false);
+        counter = 0;
+        top = 0;
+        components = 0;
+        
+        for (int node = 0; node < length * 2; node++) {
+            if (index[node] < 0) {
+                strongConnect(node);
+            }
+        }
+        
+        /* Keep only matched values and those on a cycle with the cell */
+        for (int k = 0; k < length; k++) {
+            long allowed = 1L << matchedValue[k];
+            
+            for (long m = cellMasks[k] & ~allowed; m != 0; m &= m - 1) {
+                int v = Long.numberOfTrailingZeros(m);
+                if (component[length + v] == component[k]) {
+                    allowed |= 1L << v;
+                }
+            }
+            
+            poss.restrict(cells[k], allowed);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Find an augmenting path from a cell, reassigning values along it.
+     */
+    private boolean augment(int k)
+    {
+        for (long m = cellMasks[k]; m != 0; m &= m - 1) {
+            int v = Long.numberOfTrailingZeros(m);
+            
+            if (visited[v] != stamp) {
+                visited[v] = stamp;
+                
+                if (matchedCell[v] < 0 || augment(matchedCell[v])) {
+                    matchedCell[v] = k;
+                    matchedValue[k] = v;
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Cells lead to each of their unmatched values, and values lead back
+     * to the cells they are matched with.
+     */
+    private void strongConnect(int node)
+    {
+        index[node] = counter;
+        low[node] = counter;
+        counter++;
+        stack[top++] = node;
+        onStack[node] = true;
+        
+        if (node < length) {
+            long m = cellMasks[node] & ~(1L << matchedValue[node]);
+            
+            for (; m != 0; m &= m - 1) {
+                visit(node, length + Long.numberOfTrailingZeros(m));
+            }
+        } else {
+            visit(node, matchedCell[node - length]);
+        }
+        
+        if (low[node] == index[node]) {
+            int w;
+            do {
+                w = stack[--top];
+                onStack[w] = false;
+                component[w] = components;
+            } while (w != node);
+            components++;
+        }
+    }
+    
+    private void visit(int node, int w)
+    {
+        if (index[w] < 0) {
+            strongConnect(w);
+            low[node] = Math.min(low[node], low[w]);
+        } else if (onStack[w]) {
+            low[node] = Math.min(low[node], index[w]);
+        }
+    }
+}
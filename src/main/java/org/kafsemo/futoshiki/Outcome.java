@@ -0,0 +1,95 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+/**
+ * How a search ended, and how much work it did.
+ * 
+ * @author Joseph Walton
+ */
+public class Outcome
+{
+    private final Status status;
+    private final SolverStats stats;
+    
+    Outcome(Status status, SolverStats stats)
+    {
+        this.status = status;
+        this.stats = stats;
+    }
+    
+    public Status getStatus()
+    {
+        return status;
+    }
+    
+    /**
+     * @return the counters for the search
+     */
+    public SolverStats getStats()
+    {
+        return stats;
+    }
+    
+    /**
+     * @return how many attempts the search made
+     */
+    public long getNodes()
+    {
+        return stats.getNodes();
+    }
+    
+    /**
+     * @return how many solutions were passed to the target
+     */
+    public long getSolutions()
+    {
+        return stats.getSolutions();
+    }
+    
+    public long getElapsedNanos()
+    {
+        return stats.getElapsedNanos();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return status + ": " + stats;
+    }
+    
+    public enum Status
+    {
+        /**
+         * The search finished, either by covering every possibility or
+         * because the target wanted no more solutions
+         */
+        SOLVED,
+        
+        /** The limit on the number of attempts was reached */
+        EXHAUSTED,
+        
+        /** The time limit passed */
+        TIMED_OUT,
+        
+        /** The cancellation token was cancelled */
+        CANCELLED;
+    }
+}
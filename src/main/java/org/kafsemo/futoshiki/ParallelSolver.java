@@ -0,0 +1,335 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.kafsemo.futoshiki.Solver.AllDifferent;
+import org.kafsemo.futoshiki.Solver.Progress;
+import org.kafsemo.futoshiki.Solver.SolutionTarget;
+
+/**
+ * A solver that divides the search between the threads of a fork/join pool.
+ * The first few choices are made by splitting the search into a separate
+ * task for each value; each task then copies the puzzle and continues
+ * as a sequential search.
+ * <p>
+ * Solutions are delivered to the target one at a time, but from any thread
+ * and in no particular order. The target is told the total number of
+ * possibilities at the start and zero at the end, but not the progress
+ * in between.
+ * <p>
+ * The statistics of every task are added together into one set for the
+ * whole solve, reported like those of a {@link Solver}.
+ * 
+ * @author Joseph Walton
+ */
+public class ParallelSolver
+{
+    private static final CellPos[] CELLPOS_ARRAY = {};
+    
+    /* Splitting beyond this many queued tasks gains nothing */
+    private static final int MAX_SURPLUS_TASKS = 3;
+    
+    private static ForkJoinPool defaultPool;
+    
+    private final SolutionTarget target;
+    private final ForkJoinPool pool;
+    
+    private AllDifferent allDifferent = AllDifferent.NONE;
+    private int splitDepth = 4;
+    
+    private boolean timing;
+    private SolverMonitor monitor;
+    
+    /**
+     * Create a solver that shares a pool with one thread for each processor.
+     */
+    public ParallelSolver(SolutionTarget target)
+    {
+        this(target, defaultPool());
+    }
+    
+    public ParallelSolver(SolutionTarget target, ForkJoinPool pool)
+    {
+        this.target = target;
+        this.pool = pool;
+    }
+    
+    private static synchronized ForkJoinPool defaultPool()
+    {
+        if (defaultPool == null) {
+            /* Workers are daemon threads, so an idle pool won't block exit */
+            defaultPool = new ForkJoinPool();
+        }
+        
+        return defaultPool;
+    }
+    
+    public void setAllDifferent(AllDifferent allDifferent)
+    {
+        this.allDifferent = allDifferent;
+    }
+    
+    public AllDifferent getAllDifferent()
+    {
+        return allDifferent;
+    }
+    
+    /**
+     * Choose how many cells deep to keep splitting the search into
+     * separate tasks.
+     */
+    public void setSplitDepth(int splitDepth)
+    {
+        if (splitDepth < 0) {
+            throw new IllegalArgumentException("Split depth must not be negative: "
+                    + splitDepth);
+        }
+        
+        this.splitDepth = splitDepth;
+    }
+    
+    public int getSplitDepth()
+    {
+        return splitDepth;
+    }
+    
+    /**
+     * Choose whether each task times its propagation and rule checks.
+     * 
+     * @see Solver#setTiming(boolean)
+     */
+    public void setTiming(boolean timing)
+    {
+        this.timing = timing;
+    }
+    
+    public boolean isTiming()
+    {
+        return timing;
+    }
+    
+    /**
+     * Report the statistics of every solve to a monitor as it ends.
+     * 
+     * @param monitor the monitor, or <code>null</code> for none
+     */
+    public void setMonitor(SolverMonitor monitor)
+    {
+        this.monitor = monitor;
+    }
+    
+    public SolverMonitor getMonitor()
+    {
+        return monitor;
+    }
+    
+    /**
+     * Find every solution, returning when the search is complete or the
+     * target has asked for no more.
+     * 
+     * @return the work done by every task together
+     */
+    public Outcome solve(Futoshiki f)
+    {
+        long start = System.nanoTime();
+        SolverEvents events = new SolverEvents(f);
+        SolverStats stats = new SolverStats();
+        
+        f = f.clone();
+        
+        RuleGraph rules = new RuleGraph(f);
+        Possibilities poss = new Possibilities(f.getLength());
+        boolean consistent = poss.use(f, Solver.propagator(rules, allDifferent));
+        
+        if (target.remainingPossibilities(poss.size())) {
+            boolean stopped = false;
+            
+            if (consistent) {
+                SynchronizedTarget st = new SynchronizedTarget(target);
+                pool.invoke(new SubtreeTask(st, stats, rules, f,
+                        f.blankCells().toArray(CELLPOS_ARRAY), poss, 0));
+                stopped = st.stopped;
+            }
+            
+            if (!stopped) {
+                target.remainingPossibilities(BigInteger.ZERO);
+            }
+        }
+        
+        /* Every task has finished, so the totals are complete */
+        synchronized (stats) {
+            stats.elapsedNanos = System.nanoTime() - start;
+            events.end(Outcome.Status.SOLVED, stats);
+            
+            if (monitor != null) {
+                monitor.record(Outcome.Status.SOLVED, stats);
+            }
+        }
+        
+        return new Outcome(Outcome.Status.SOLVED, stats);
+    }
+    
+    /**
+     * Search every completion of a partly filled puzzle, owned by this task.
+     */
+    private class SubtreeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final SynchronizedTarget target;
+        private final SolverStats totals;
+        private final RuleGraph rules;
+        private final Futoshiki f;
+        private final CellPos[] blank;
+        private final Possibilities poss;
+        private final int nb;
+        
+        SubtreeTask(SynchronizedTarget target, SolverStats totals,
+                RuleGraph rules, Futoshiki f, CellPos[] blank,
+                Possibilities poss, int nb)
+        {
+            this.target = target;
+            this.totals = totals;
+            this.rules = rules;
+            this.f = f;
+            this.blank = blank;
+            this.poss = poss;
+            this.nb = nb;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (target.stopped || !f.isValid()) {
+                return;
+            }
+            
+            if (nb < blank.length && nb < splitDepth
+                    && getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS) {
+                split();
+            } else {
+                sequential();
+            }
+        }
+        
+        /**
+         * Make a new task, with its own copy of the puzzle, for each value
+         * of the blank with the fewest possibilities.
+         */
+        private void split()
+        {
+            Search.moveBlankWithLeastPossibilitiesIntoPlace(blank, nb, poss);
+            
+            CellPos p = blank[nb];
+            Propagator propagator = Solver.propagator(rules, allDifferent);
+            
+            List<SubtreeTask> children = new ArrayList<SubtreeTask>();
+            SolverStats stats = new SolverStats();
+            stats.maxDepth = nb;
+            
+            for (long m = poss.mask(p.column, p.row); m != 0; m &= m - 1) {
+                int v = Possibilities.lowest(m);
+                
+                Possibilities childPoss = poss.clone();
+                childPoss.use(p.column, p.row, v);
+                stats.nodes++;
+                stats.propagations++;
+                
+                if (propagator.propagate(childPoss)) {
+                    Futoshiki childF = f.clone();
+                    childF.set(p.column, p.row, v);
+                    
+                    children.add(new SubtreeTask(target, totals, rules, childF,
+                            blank.clone(), childPoss, nb + 1));
+                } else {
+                    stats.backtracks++;
+                }
+            }
+            
+            record(stats);
+            invokeAll(children);
+        }
+        
+        private void sequential()
+        {
+            poss.startTrail();
+            
+            Search s = new Search(target, f, blank, poss,
+                    Solver.propagator(rules, allDifferent), Progress.NONE)
+            {
+                @Override
+                protected boolean isStopped()
+                {
+                    return target.stopped;
+                }
+            };
+            
+            s.setTiming(timing);
+            s.solve(nb, 1.0);
+            record(s.getStats());
+        }
+        
+        private void record(SolverStats stats)
+        {
+            synchronized (totals) {
+                totals.add(stats);
+            }
+        }
+    }
+    
+    /**
+     * Pass solutions on one at a time, and remember when no more are wanted.
+     */
+    private static class SynchronizedTarget implements SolutionTarget
+    {
+        private final SolutionTarget target;
+        
+        volatile boolean stopped;
+        
+        SynchronizedTarget(SolutionTarget target)
+        {
+            this.target = target;
+        }
+        
+        public synchronized boolean solution(Futoshiki f)
+        {
+            if (stopped) {
+                return false;
+            }
+            
+            if (!target.solution(f)) {
+                stopped = true;
+            }
+            
+            return !stopped;
+        }
+        
+        public boolean remainingPossibilities(BigInteger count)
+        {
+            return !stopped;
+        }
+    }
+}
@@ -19,81 +19,368 @@
 package org.kafsemo.futoshiki;
 
 import java.math.BigInteger;
-import java.util.BitSet;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
- * Moves that are still possible given the current numbers.
+ * Moves that are still possible given the current numbers. Each cell's
+ * candidates are held as a single bitmask, with bit <code>v - 1</code> set
+ * while the value <code>v</code> remains possible.
  * 
  * @author Joseph Walton
  */
 public class Possibilities extends Grid
 {
-    private final BitSet possibilities;
+    private final long[] masks;
+    
+    /* The undo trail, when recording: changed cells and their old masks */
+    private int[] trailCells;
+    private long[] trailMasks;
+    private int trailSize;
+    
+    /* Cells changed since they were last propagated from, in order */
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueHead, queueSize;
+    
+    /* Rows and columns containing changed cells, one bit for each */
+    private long dirtyRows, dirtyColumns;
+    
+    /* Zobrist keys, when hashing: a pair of random words for each value of
+       each cell, and the XOR of the words for every value still possible */
+    private long[] zobristA, zobristB;
+    private long keyA, keyB;
 
     public Possibilities(int length)
     {
-        super(length);
-        this.possibilities = new BitSet(length * length * length);
+        this(length, new long[length * length]);
+        Arrays.fill(masks, allValues(length));
     }
     
-    private Possibilities(int length, BitSet p)
+    private Possibilities(int length, long[] masks)
     {
         super(length);
-        this.possibilities = p;
+        this.masks = masks;
+        this.queue = new int[masks.length];
+        this.queued = new boolean[masks.length];
     }
 
-    int bit(int column, int row, int value)
+    /**
+     * A mask with every value from 1 to <code>length</code>, which may be
+     * from zero to 64.
+     */
+    static long allValues(int length)
     {
-        return (((column - 1) * length) + row - 1) * length + value - 1;
+        if (length >= Long.SIZE) {
+            return -1L;
+        } else {
+            return (1L << length) - 1;
+        }
     }
     
-    public void use(int column, int row, int value)
+    static long bit(int value)
     {
-        if (value < 1 || value > length)
-            throw new IllegalArgumentException("Bad cell value " + value);
+        return 1L << (value - 1);
+    }
+    
+    /**
+     * The lowest value present in a mask, or zero for an empty mask.
+     */
+    static int lowest(long mask)
+    {
+        if (mask == 0) {
+            return 0;
+        } else {
+            return Long.numberOfTrailingZeros(mask) + 1;
+        }
+    }
+    
+    /**
+     * The highest value present in a mask, or zero for an empty mask.
+     */
+    static int highest(long mask)
+    {
+        return Long.SIZE - Long.numberOfLeadingZeros(mask);
+    }
+    
+    long mask(int column, int row)
+    {
+        return masks[idxInternal(column, row)];
+    }
+    
+    long mask(int i)
+    {
+        return masks[i];
+    }
+    
+    /**
+     * Start recording every change so that it can be rolled back with
+     * {@link #undo(int)}. A cell can only lose values, so the trail never
+     * needs more than one entry per value per cell.
+     */
+    void startTrail()
+    {
+        if (trailCells == null) {
+            int capacity = masks.length * length;
+            trailCells = new int[capacity];
+            trailMasks = new long[capacity];
+        }
+        trailSize = 0;
+    }
+    
+    /**
+     * Make every value possible in every cell again, keeping any trail
+     * space for the next search.
+     */
+    void reset()
+    {
+        Arrays.fill(masks, allValues(length));
+        trailSize = 0;
+        clearQueue();
         
-        for (int c = 1; c <= length; c++) {
-            if (c != column) {
-                possibilities.set(bit(c, row, value));
-            }
+        if (zobristA != null) {
+            rehash();
         }
+    }
+    
+    /**
+     * Start keeping a pair of Zobrist keys for these possibilities,
+     * updated with every change and every undo. The same possibilities
+     * always have the same keys, however they were reached.
+     */
+    void startHashing(Random random)
+    {
+        int size = masks.length * length;
         
-        for (int r = 1; r <= length; r++) {
-            if (r != row) {
-                possibilities.set(bit(column, r, value));
-            }
+        zobristA = new long[size];
+        zobristB = new long[size];
+        
+        for (int i = 0; i < size; i++) {
+            zobristA[i] = random.nextLong();
+            zobristB[i] = random.nextLong();
         }
         
-        for (int v = 1; v <= length; v++) {
-            if (v != value) {
-                possibilities.set(bit(column, row, v));
+        rehash();
+    }
+    
+    private void rehash()
+    {
+        keyA = 0;
+        keyB = 0;
+        
+        for (int i = 0; i < masks.length; i++) {
+            toggle(i, masks[i]);
+        }
+    }
+    
+    /**
+     * Add or remove values of a cell from the keys.
+     */
+    private void toggle(int i, long values)
+    {
+        int base = i * length;
+        
+        for (long m = values; m != 0; m &= m - 1) {
+            int j = base + Long.numberOfTrailingZeros(m);
+            keyA ^= zobristA[j];
+            keyB ^= zobristB[j];
+        }
+    }
+    
+    /**
+     * @return the word for a value of a cell in the first key
+     */
+    long wordA(int column, int row, int value)
+    {
+        return zobristA[idxInternal(column, row) * length + value - 1];
+    }
+    
+    /**
+     * @return the word for a value of a cell in the second key
+     */
+    long wordB(int column, int row, int value)
+    {
+        return zobristB[idxInternal(column, row) * length + value - 1];
+    }
+    
+    /**
+     * @return the first key, if hashing
+     */
+    long keyA()
+    {
+        return keyA;
+    }
+    
+    /**
+     * @return the second key, if hashing, independent of the first
+     */
+    long keyB()
+    {
+        return keyB;
+    }
+    
+    /**
+     * @return a position in the trail to pass to {@link #undo(int)}
+     */
+    int mark()
+    {
+        return trailSize;
+    }
+    
+    /**
+     * Restore every cell changed since the trail was at <code>mark</code>.
+     */
+    void undo(int mark)
+    {
+        while (trailSize > mark) {
+            trailSize--;
+            
+            int i = trailCells[trailSize];
+            if (zobristA != null) {
+                toggle(i, masks[i] ^ trailMasks[trailSize]);
             }
+            masks[i] = trailMasks[trailSize];
         }
     }
     
-    int minPossible(int column, int row)
+    /**
+     * Remove everything but <code>allowed</code> from a cell's mask,
+     * recording the change if there is a trail and queueing the cell
+     * if it changed.
+     * 
+     * @return false if the cell has no possibilities left
+     */
+    boolean restrict(int i, long allowed)
     {
-        for (int v = 1; v <= length; v++) {
-            if (isPossible(column, row, v)) {
-                return v;
+        long old = masks[i];
+        long m = old & allowed;
+        
+        if (m != old) {
+            if (trailCells != null) {
+                trailCells[trailSize] = i;
+                trailMasks[trailSize] = old;
+                trailSize++;
+            }
+            if (zobristA != null) {
+                toggle(i, old ^ m);
             }
+            masks[i] = m;
+            enqueue(i);
+            dirtyRows |= 1L << (i / length);
+            dirtyColumns |= 1L << (i % length);
         }
         
-        return 0;
+        return m != 0;
     }
     
-    int maxPossible(int column, int row)
+    void enqueue(int i)
+    {
+        if (!queued[i]) {
+            queued[i] = true;
+            queue[(queueHead + queueSize) % queue.length] = i;
+            queueSize++;
+        }
+    }
+    
+    /**
+     * @return the next changed cell from the queue, or -1 if none remain
+     */
+    int poll()
+    {
+        if (queueSize == 0) {
+            return -1;
+        }
+        
+        int i = queue[queueHead];
+        queued[i] = false;
+        queueHead = (queueHead + 1) % queue.length;
+        queueSize--;
+        
+        return i;
+    }
+    
+    void clearQueue()
+    {
+        while (poll() >= 0) {
+            /* Discard */
+        }
+        dirtyRows = 0;
+        dirtyColumns = 0;
+    }
+    
+    /**
+     * @return the rows changed since the last call, as zero-based bits
+     */
+    long takeDirtyRows()
+    {
+        long d = dirtyRows;
+        dirtyRows = 0;
+        return d;
+    }
+    
+    /**
+     * @return the columns changed since the last call, as zero-based bits
+     */
+    long takeDirtyColumns()
+    {
+        long d = dirtyColumns;
+        dirtyColumns = 0;
+        return d;
+    }
+    
+    void markAllDirty()
+    {
+        dirtyRows = -1L >>> (Long.SIZE - length);
+        dirtyColumns = dirtyRows;
+    }
+    
+    public void use(int column, int row, int value)
     {
-        for (int v = length; v >= 1; v--) {
-            if (isPossible(column, row, v)) {
-                return v;
+        if (value < 1 || value > length)
+            throw new IllegalArgumentException("Bad cell value " + value);
+        
+        long bit = bit(value);
+        long notBit = ~bit;
+        
+        int cell = idxInternal(column, row);
+        
+        int rowStart = idxInternal(1, row);
+        for (int i = rowStart; i < rowStart + length; i++) {
+            if (i != cell) {
+                restrict(i, notBit);
+            }
+        }
+        
+        for (int i = column - 1; i < masks.length; i += length) {
+            if (i != cell) {
+                restrict(i, notBit);
             }
         }
         
-        return 0;
+        restrict(cell, bit);
+    }
+    
+    int minPossible(int column, int row)
+    {
+        return lowest(mask(column, row));
+    }
+    
+    int maxPossible(int column, int row)
+    {
+        return highest(mask(column, row));
     }
     
     public void use(Futoshiki f)
+    {
+        use(f, new Propagator(new RuleGraph(f), null));
+    }
+    
+    /**
+     * Use the numbers from a puzzle, then propagate the consequences.
+     * 
+     * @return false if some cell has no possibilities left
+     */
+    boolean use(Futoshiki f, Propagator propagator)
     {
         for (int r = 1; r <= length; r++) {
             for (int c = 1; c <= length; c++) {
@@ -104,78 +391,47 @@ public class Possibilities extends Grid
             }
         }
 
-        boolean learnedSomething;
-        
-        do {
-            learnedSomething = false;
-            for (GtRule r : f.getRules()) {
-                int greatestMoreThan = minPossible(r.getLesserColumn(), r.getLesserRow());
-                if (greatestMoreThan > 0) {
-                    for (int v = 1; v <=  greatestMoreThan; v++) {
-                        learnedSomething |= !possibilities.get(bit(r.getGreaterColumn(), r.getGreaterRow(), v));
-                        possibilities.set(bit(r.getGreaterColumn(), r.getGreaterRow(), v));
-                    }
-                } else {
-                    /* No solutions. */
-                    for (int v = 1; v <=  length; v++) {
-                        learnedSomething |= !possibilities.get(bit(r.getGreaterColumn(), r.getGreaterRow(), v));
-                        possibilities.set(bit(r.getGreaterColumn(), r.getGreaterRow(), v));
-                    }
-                }
-                
-                int leastLessThan = maxPossible(r.getGreaterColumn(), r.getGreaterRow());
-                if (leastLessThan > 0) {
-                    for (int v = leastLessThan; v <= length; v++) {
-                        learnedSomething |= !possibilities.get(bit(r.getLesserColumn(), r.getLesserRow(), v));
-                        possibilities.set(bit(r.getLesserColumn(), r.getLesserRow(), v));
-                    }
-                } else {
-                    /* No solutions. */
-                    for (int v = 1; v <= length; v++) {
-                        learnedSomething |= !possibilities.get(bit(r.getLesserColumn(), r.getLesserRow(), v));
-                        possibilities.set(bit(r.getLesserColumn(), r.getLesserRow(), v));
-                    }
-                }
-            }
-        } while (learnedSomething);
+        return propagator.propagateAll(this);
     }
     
     public boolean isPossible(int column, int row, int value)
     {
-        return !possibilities.get(bit(column, row, value));
+        return (mask(column, row) & bit(value)) != 0;
     }
     
     public Possibilities clone()
     {
-        return new Possibilities(length, (BitSet) possibilities.clone());
+        return new Possibilities(length, masks.clone());
     }
 
     public BigInteger size()
     {
         BigInteger total = BigInteger.ONE;
         
-        for (int r = 1; r <= length; r++) {
-            for (int c = 1; c <= length; c++) {
-                int available = possibleCount(c, r);
-                
-                total = total.multiply(BigInteger.valueOf(available));
+        /* Multiply in a long for as long as it can't overflow */
+        final long limit = Long.MAX_VALUE / Math.max(length, 1);
+        long partial = 1;
+        
+        for (long m : masks) {
+            int available = Long.bitCount(m);
+            
+            if (available == 0) {
+                return BigInteger.ZERO;
             }
+            
+            if (partial > limit) {
+                total = total.multiply(BigInteger.valueOf(partial));
+                partial = 1;
+            }
+            partial *= available;
         }
 
-        return total;
+        return total.multiply(BigInteger.valueOf(partial));
     }
     
     public int possibleCount(int column, int row)
     {
-        int available = 0;
-        
-        for (int v = 1; v <= length; v++) {
-            if (isPossible(column, row, v)) {
-                available++;
-            }
-        }
-        
-        return available;
+        return Long.bitCount(mask(column, row));
     }
     
     public int possibleCount(CellPos cell)
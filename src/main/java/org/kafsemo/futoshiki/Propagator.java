@@ -0,0 +1,118 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+/**
+ * Propagates the consequences of changed possibilities, through the rules
+ * and, optionally, through reasoning about each row and column holding
+ * every value exactly once.
+ * 
+ * @author Joseph Walton
+ */
+class Propagator
+{
+    private final RuleGraph rules;
+    private final AllDifferentFilter filter;
+    
+    /* The cell indexes in each row and each column */
+    private final int[][] rows, columns;
+    
+    /**
+     * @param filter reasoning for rows and columns, or null to rely on
+     * the elimination of placed values alone
+     */
+    Propagator(RuleGraph rules, AllDifferentFilter filter)
+    {
+        this.rules = rules;
+        this.filter = filter;
+        
+        int length = rules.getLength();
+        
+        rows = new int[length][length];
+        columns = new int[length][length];
+        
+        for (int r = 0; r < length; r++) {
+            for (int c = 0; c < length; c++) {
+                rows[r][c] = r * length + c;
+                columns[c][r] = r * length + c;
+            }
+        }
+    }
+    
+    RuleGraph getRules()
+    {
+        return rules;
+    }
+    
+    /**
+     * Propagate from every cell, as for a new puzzle.
+     * 
+     * @return false if some cell has no possibilities left
+     */
+    boolean propagateAll(Possibilities poss)
+    {
+        if (!rules.propagateAll(poss)) {
+            return false;
+        }
+        
+        poss.markAllDirty();
+        
+        return propagate(poss);
+    }
+    
+    /**
+     * Propagate from the cells changed since the last propagation until
+     * nothing more can be learned.
+     * 
+     * @return false if some cell has no possibilities left
+     */
+    boolean propagate(Possibilities poss)
+    {
+        while (rules.propagate(poss)) {
+            long dirtyRows = poss.takeDirtyRows(),
+                dirtyColumns = poss.takeDirtyColumns();
+            
+            if (filter == null || (dirtyRows | dirtyColumns) == 0) {
+                return true;
+            }
+            
+            if (!filterUnits(poss, rows, dirtyRows)
+                    || !filterUnits(poss, columns, dirtyColumns))
+            {
+                poss.clearQueue();
+                return false;
+            }
+        }
+        
+        return false;
+    }
+    
+    private boolean filterUnits(Possibilities poss, int[][] units, long dirty)
+    {
+        for (long d = dirty; d != 0; d &= d - 1) {
+            int u = Long.numberOfTrailingZeros(d);
+            
+            if (!filter.filter(poss, units[u])) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+}
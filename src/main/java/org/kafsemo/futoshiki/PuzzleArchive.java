@@ -0,0 +1,167 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file of puzzles, written by {@link PuzzleArchiveWriter}, that is mapped
+ * into memory so any puzzle can be read by its number without reading the
+ * others.
+ * <p>
+ * The file holds a header, the records of {@link FutoshikiCodec} back to
+ * back, an index of the offset of each record and a trailer giving the
+ * index's offset and the number of puzzles. A single mapping can't cover
+ * more than two gigabytes, so larger files are mapped in segments, each
+ * overlapping the next by the longest record; any record or index entry
+ * then lies wholly within the segment it starts in.
+ * <p>
+ * Reading is safe from any number of threads.
+ * 
+ * @author Joseph Walton
+ */
+public class PuzzleArchive implements Closeable
+{
+    static final int MAGIC = 0x46555441, VERSION = 1;
+    
+    static final int HEADER_LENGTH = 8, TRAILER_LENGTH = 16;
+    
+    private static final int DEFAULT_SEGMENT_LENGTH = 1 << 30;
+    
+    private static final int OVERLAP = FutoshikiCodec.encodedLength(Grid.MAX_LENGTH);
+    
+    private final RandomAccessFile file;
+    
+    private final int segmentLength;
+    private final MappedByteBuffer[] segments;
+    
+    private final long indexOffset, size;
+    
+    public PuzzleArchive(File f) throws IOException
+    {
+        this(f, DEFAULT_SEGMENT_LENGTH);
+    }
+    
+    PuzzleArchive(File f, int segmentLength) throws IOException
+    {
+        this.segmentLength = segmentLength;
+        this.file = new RandomAccessFile(f, "r");
+        
+        try {
+            FileChannel channel = file.getChannel();
+            long length = channel.size();
+            
+            if (length < HEADER_LENGTH + TRAILER_LENGTH) {
+                throw new IOException("Not a puzzle archive: " + f);
+            }
+            
+            int count = (int) ((length + segmentLength - 1) / segmentLength);
+            segments = new MappedByteBuffer[count];
+            
+            for (int i = 0; i < count; i++) {
+                long start = (long) i * segmentLength;
+                long end = Math.min(length, start + segmentLength + OVERLAP);
+                
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        start, end - start);
+            }
+            
+            if (at(0).getInt() != MAGIC) {
+                throw new IOException("Not a puzzle archive: " + f);
+            }
+            
+            int version = at(4).getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported archive version: " + version);
+            }
+            
+            ByteBuffer trailer = at(length - TRAILER_LENGTH);
+            indexOffset = trailer.getLong();
+            size = trailer.getLong();
+            
+            if (size < 0 || indexOffset < HEADER_LENGTH
+                    || indexOffset + size * 8 != length - TRAILER_LENGTH) {
+                throw new IOException("Corrupt puzzle archive: " + f);
+            }
+        } catch (IOException ioe) {
+            file.close();
+            throw ioe;
+        }
+    }
+    
+    /**
+     * A view of the file from this offset onwards, good for at least
+     * the longest record.
+     */
+    private ByteBuffer at(long offset)
+    {
+        int s = (int) (offset / segmentLength);
+        
+        ByteBuffer bb = segments[s].duplicate();
+        bb.position((int) (offset - (long) s * segmentLength));
+        
+        return bb;
+    }
+    
+    /**
+     * @return the number of puzzles in the archive
+     */
+    public long size()
+    {
+        return size;
+    }
+    
+    /**
+     * @param index the number of the puzzle, from zero
+     * @throws IndexOutOfBoundsException if there is no such puzzle
+     * @throws IllegalArgumentException if the puzzle's record is corrupt
+     */
+    public Futoshiki get(long index)
+    {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No puzzle " + index
+                    + " among " + size);
+        }
+        
+        long offset = at(indexOffset + index * 8).getLong();
+        
+        if (offset < HEADER_LENGTH || offset >= indexOffset) {
+            throw new IllegalArgumentException("Bad offset for puzzle "
+                    + index + ": " + offset);
+        }
+        
+        return FutoshikiCodec.decode(at(offset));
+    }
+    
+    /**
+     * Close the file. The mappings themselves are only released once
+     * they are garbage collected.
+     */
+    public void close() throws IOException
+    {
+        file.close();
+    }
+}
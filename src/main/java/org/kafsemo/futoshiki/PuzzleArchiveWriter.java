@@ -0,0 +1,110 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes puzzles to a file to be read back by number with
+ * {@link PuzzleArchive}. The index is kept in memory, at eight bytes
+ * a puzzle, and written out on {@link #close()}.
+ * 
+ * @author Joseph Walton
+ */
+public class PuzzleArchiveWriter implements Closeable
+{
+    private final DataOutputStream out;
+    private final BinaryPuzzleWriter records;
+    
+    private long offset;
+    private long[] offsets = new long[1024];
+    private int size;
+    private boolean closed;
+    
+    public PuzzleArchiveWriter(File f) throws IOException
+    {
+        out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(f)));
+        records = new BinaryPuzzleWriter(out);
+        
+        out.writeInt(PuzzleArchive.MAGIC);
+        out.writeInt(PuzzleArchive.VERSION);
+        offset = PuzzleArchive.HEADER_LENGTH;
+    }
+    
+    /**
+     * @return the number of the puzzle in the archive
+     * @throws IllegalArgumentException if a rule is not between
+     * neighbouring cells
+     * @throws IllegalStateException if the writer has been closed
+     */
+    public long write(Futoshiki f) throws IOException
+    {
+        if (closed) {
+            throw new IllegalStateException("Archive writer is closed");
+        }
+        
+        if (size == offsets.length) {
+            if (size == Integer.MAX_VALUE - 8) {
+                throw new IOException("Archive is full");
+            }
+            
+            offsets = Arrays.copyOf(offsets,
+                    (int) Math.min(Integer.MAX_VALUE - 8, size * 2L));
+        }
+        
+        records.write(f);
+        
+        offsets[size] = offset;
+        offset += FutoshikiCodec.encodedLength(f.getLength());
+        
+        return size++;
+    }
+    
+    /**
+     * Write the index and trailer, and close the file. Closing again has
+     * no effect.
+     */
+    public void close() throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        
+        closed = true;
+        
+        try {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(offsets[i]);
+            }
+            
+            out.writeLong(offset);
+            out.writeLong(size);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Reads a series of puzzles in the text format of {@link FutoshikiPrinter},
+ * separated by empty lines. A printed puzzle never contains an empty line,
+ * since even a row with no rules is written out in spaces.
+ * <p>
+ * Text is parsed a character at a time as it arrives, into working arrays
+ * that are kept from one puzzle to the next, so a large corpus can be read
+ * without building strings or collections for each puzzle. A puzzle's size
+ * is only known once all of it has been seen, so cells and rules are held
+ * until then before being written into the result.
+ * 
+ * @author Joseph Walton
+ */
+public class PuzzleReader implements Closeable
+{
+    private static final int MAX = Grid.MAX_LENGTH;
+    
+    /* Exactly one source */
+    private final Reader reader;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    
+    /* Whether all the input is one puzzle, with empty lines as rows */
+    private final boolean whole;
+    
+    private final char[] buf = new char[8192];
+    private int pos, limit;
+    
+    /* Whether a line ended with a carriage return, in case a newline follows */
+    private boolean afterCr;
+    
+    /* The values seen, by (row - 1) * MAX + (column - 1), and which were set */
+    private final byte[] cells = new byte[MAX * MAX];
+    private final int[] filled = new int[MAX * MAX];
+    private int filledCount;
+    
+    /* Pairs of greater and lesser cells, indexed as for cells */
+    private int[] rules = new int[64];
+    private int ruleCount;
+    
+    /* The extent of the current puzzle */
+    private int lines, column, width, height, maxValue;
+    private boolean tooLarge;
+    
+    public PuzzleReader(Reader in)
+    {
+        this(in, null, null, false);
+    }
+    
+    /**
+     * Read puzzles from the remaining characters in a buffer.
+     */
+    public PuzzleReader(CharBuffer in)
+    {
+        this(null, in, null, false);
+    }
+    
+    /**
+     * Read puzzles from the remaining bytes in a buffer, as ASCII. UTF-8 may
+     * also be read, as long as there are no other characters in the puzzles.
+     */
+    public PuzzleReader(ByteBuffer in)
+    {
+        this(null, null, in, false);
+    }
+    
+    private PuzzleReader(Reader reader, CharBuffer chars, ByteBuffer bytes,
+            boolean whole)
+    {
+        this.reader = reader;
+        this.chars = chars;
+        this.bytes = bytes;
+        this.whole = whole;
+    }
+    
+    /**
+     * Parse all of a buffer as a single puzzle, as
+     * {@link FutoshikiPrinter#parse(String)} does: empty lines are rows or
+     * rules like any other, and so is whatever follows the last line break.
+     * Empty input is a puzzle of size one.
+     */
+    static Futoshiki parseWhole(CharBuffer in)
+    {
+        try {
+            return new PuzzleReader(null, in, null, true).read();
+        } catch (IOException ioe) {
+            /* Not from a buffer */
+            throw new RuntimeException(ioe);
+        }
+    }
+    
+    /**
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException
+    {
+        int n;
+        
+        if (reader != null) {
+            n = reader.read(buf, 0, buf.length);
+        } else if (chars != null) {
+            n = Math.min(chars.remaining(), buf.length);
+            chars.get(buf, 0, n);
+        } else {
+            n = Math.min(bytes.remaining(), buf.length);
+            for (int i = 0; i < n; i++) {
+                buf[i] = (char) (bytes.get() & 0xFF);
+            }
+        }
+        
+        pos = 0;
+        limit = Math.max(n, 0);
+        
+        return n > 0;
+    }
+    
+    /**
+     * @return the next puzzle, or <code>null</code> if there are no more
+     * @throws IllegalArgumentException if the next puzzle can't be parsed;
+     * reading may continue with the one after
+     */
+    public Futoshiki read() throws IOException
+    {
+        return read(null);
+    }
+    
+    /**
+     * Read the next puzzle into an existing one, if it's the same size,
+     * rather than creating a new puzzle.
+     * 
+     * @param reuse a puzzle to overwrite, or <code>null</code>
+     * @return the next puzzle, which may be <code>reuse</code>, or
+     * <code>null</code> if there are no more
+     * @throws IllegalArgumentException if the next puzzle can't be parsed;
+     * reading may continue with the one after
+     */
+    public Futoshiki read(Futoshiki reuse) throws IOException
+    {
+        lines = 0;
+        column = 0;
+        width = 0;
+        height = 0;
+        maxValue = 0;
+        tooLarge = false;
+        
+        while (true) {
+            if (pos == limit && !fill()) {
+                if (column > 0 || whole) {
+                    endLine();
+                }
+                break;
+            }
+            
+            char c = buf[pos++];
+            
+            if (c == '\n' && afterCr) {
+                afterCr = false;
+                continue;
+            }
+            
+            afterCr = (c == '\r');
+            
+            if (c == '\n' || c == '\r') {
+                if (column > 0 || whole) {
+                    endLine();
+                } else if (lines > 0) {
+                    break;
+                }
+            } else {
+                symbol(c);
+                column++;
+            }
+        }
+        
+        if (lines == 0) {
+            return null;
+        }
+        
+        return build(reuse);
+    }
+    
+    private void endLine()
+    {
+        if ((lines & 1) == 0) {
+            width = Math.max(width, (column + 1) / 2);
+            height = Math.max(height, lines / 2 + 1);
+        }
+        
+        lines++;
+        column = 0;
+    }
+    
+    /**
+     * Take a character at the current position: values and rules between
+     * columns on even lines, and rules between rows on odd lines.
+     */
+    private void symbol(char c)
+    {
+        int row = lines / 2;
+        int col = column / 2;
+        
+        if ((lines & 1) == 0) {
+            if ((column & 1) == 0) {
+                int v = FutoshikiPrinter.value(c);
+                
+                if (v > 0) {
+                    if (row >= MAX || col >= MAX) {
+                        tooLarge = true;
+                    } else {
+                        int i = row * MAX + col;
+                        cells[i] = (byte) v;
+                        filled[filledCount++] = i;
+                        maxValue = Math.max(maxValue, v);
+                    }
+                }
+            } else if (c == '<') {
+                rule(row, col + 1, row, col);
+            } else if (c == '>') {
+                rule(row, col, row, col + 1);
+            }
+        } else if ((column & 1) == 0) {
+            if (c == '^') {
+                rule(row + 1, col, row, col);
+            } else if (c == 'v' || c == 'V') {
+                rule(row, col, row + 1, col);
+            }
+        }
+    }
+    
+    private void rule(int greaterRow, int greaterColumn,
+            int lesserRow, int lesserColumn)
+    {
+        if (Math.max(greaterRow, lesserRow) >= MAX
+                || Math.max(greaterColumn, lesserColumn) >= MAX) {
+            tooLarge = true;
+            return;
+        }
+        
+        width = Math.max(width, Math.max(greaterColumn, lesserColumn) + 1);
+        height = Math.max(height, Math.max(greaterRow, lesserRow) + 1);
+        
+        if (ruleCount + 2 > rules.length) {
+            int[] grown = new int[rules.length * 2];
+            System.arraycopy(rules, 0, grown, 0, ruleCount);
+            rules = grown;
+        }
+        
+        rules[ruleCount++] = greaterRow * MAX + greaterColumn;
+        rules[ruleCount++] = lesserRow * MAX + lesserColumn;
+    }
+    
+    /**
+     * Write out the puzzle that's been read, and clear the working arrays
+     * for the next one.
+     */
+    private Futoshiki build(Futoshiki reuse)
+    {
+        /* The largest row, column or value seen, including rule ends */
+        int size = Math.max(Math.max(height, width), maxValue);
+        
+        Futoshiki f = null;
+        
+        if (!tooLarge && size <= MAX) {
+            if (reuse != null && reuse.getLength() == size) {
+                f = reuse;
+                f.reset();
+            } else {
+                f = new Futoshiki(size);
+            }
+        }
+        
+        for (int k = 0; k < filledCount; k++) {
+            int i = filled[k];
+            
+            if (f != null) {
+                f.set(i % MAX + 1, i / MAX + 1, cells[i]);
+            }
+            cells[i] = 0;
+        }
+        filledCount = 0;
+        
+        if (f != null) {
+            for (int k = 0; k < ruleCount; k += 2) {
+                int a = rules[k], b = rules[k + 1];
+                f.addGtRule(a % MAX + 1, a / MAX + 1, b % MAX + 1, b / MAX + 1);
+            }
+        }
+        ruleCount = 0;
+        
+        if (f == null) {
+            throw new IllegalArgumentException("Puzzle is larger than "
+                    + MAX + " across");
+        }
+        
+        return f;
+    }
+    
+    public void close() throws IOException
+    {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+/**
+ * Grades puzzles by solving them as a person might: applying the cheapest
+ * deduction that makes any progress, going back to the cheapest after
+ * each step, and only guessing when nothing else works. The rating counts
+ * the steps taken with each technique and the guesses made, and weighs
+ * them by cost into a score.
+ * <p>
+ * The work is done on a single set of {@link Possibilities}, rolled back
+ * through its undo trail after a wrong guess, and the space is kept for
+ * the next puzzle of the same size. A rater is for one thread at a time.
+ * 
+ * @author Joseph Walton
+ */
+public class Rater
+{
+    /* The score for each value tried at a guess */
+    static final int GUESS_COST = 50;
+    
+    private static final Technique[] LADDER = Technique.values();
+    
+    private int length;
+    private Possibilities poss;
+    private MatchingFilter matching;
+    
+    /* The cell indexes in each row, then each column */
+    private int[][] units;
+    
+    /* For the puzzle being rated */
+    private RuleGraph ruleGraph;
+    private int[] greater, lesser;
+    private int[] steps;
+    private int guesses, backtracks;
+    
+    /**
+     * Solve a puzzle by deduction, guessing where necessary, and rate
+     * the effort. Puzzles with more than one solution are rated by the
+     * way to the first found.
+     */
+    public Rating rate(Futoshiki f)
+    {
+        prepare(f);
+        
+        boolean solved = true;
+        
+        for (int row = 1; row <= length && solved; row++) {
+            for (int column = 1; column <= length && solved; column++) {
+                int v = f.get(column, row);
+                if (v != 0) {
+                    poss.use(column, row, v);
+                    solved = (poss.mask(column, row) != 0);
+                }
+            }
+        }
+        poss.clearQueue();
+        
+        poss.startTrail();
+        
+        solved = solved && search();
+        
+        return new Rating(solved, steps, guesses, backtracks);
+    }
+    
+    private void prepare(Futoshiki f)
+    {
+        if (f.getLength() != length || poss == null) {
+            length = f.getLength();
+            poss = new Possibilities(length);
+            matching = new MatchingFilter(length);
+            
+            units = new int[length * 2][length];
+            for (int r = 0; r < length; r++) {
+                for (int c = 0; c < length; c++) {
+                    units[r][c] = r * length + c;
+                    units[length + c][r] = r * length + c;
+                }
+            }
+        } else {
+            poss.reset();
+        }
+        
+        ruleGraph = new RuleGraph(f);
+        
+        greater = new int[f.getRuleCount()];
+        lesser = new int[greater.length];
+        
+        int i = 0;
+        for (GtRule r : f.getRules()) {
+            greater[i] = f.idx(r.getGreaterColumn(), r.getGreaterRow());
+            lesser[i] = f.idx(r.getLesserColumn(), r.getLesserRow());
+            i++;
+        }
+        
+        steps = new int[LADDER.length];
+        guesses = 0;
+        backtracks = 0;
+    }
+    
+    /**
+     * Deduce as much as possible then, if some cells are still open,
+     * try each value for the one with the fewest.
+     * 
+     * @return true once solved, false if there is no solution from here
+     */
+    private boolean search()
+    {
+        if (!deduce()) {
+            return false;
+        }
+        
+        int best = -1;
+        int fewest = Integer.MAX_VALUE;
+        
+        for (int i = 0; i < length * length; i++) {
+            int c = Long.bitCount(poss.mask(i));
+            if (c > 1 && c < fewest) {
+                best = i;
+                fewest = c;
+            }
+        }
+        
+        if (best < 0) {
+            return true;
+        }
+        
+        int column = best % length + 1, row = best / length + 1;
+        
+        for (long m = poss.mask(best); m != 0; m &= m - 1) {
+            guesses++;
+            
+            int mark = poss.mark();
+            poss.use(column, row, Possibilities.lowest(m));
+            poss.clearQueue();
+            
+            if (search()) {
+                return true;
+            }
+            
+            backtracks++;
+            poss.undo(mark);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Apply the cheapest technique that makes progress, over and over,
+     * until none does.
+     * 
+     * @return false if some cell has no possibilities left
+     */
+    private boolean deduce()
+    {
+        boolean progress = true;
+        
+        while (progress) {
+            progress = false;
+            
+            for (Technique t : LADDER) {
+                int before = candidates();
+                boolean consistent = apply(t);
+                poss.clearQueue();
+                
+                if (!consistent) {
+                    return false;
+                }
+                
+                if (candidates() < before) {
+                    steps[t.ordinal()]++;
+                    progress = true;
+                    break;
+                }
+            }
+        }
+        
+        return true;
+    }
+    
+    private int candidates()
+    {
+        int total = 0;
+        
+        for (int i = 0; i < length * length; i++) {
+            total += Long.bitCount(poss.mask(i));
+        }
+        
+        return total;
+    }
+    
+    /**
+     * @return false if the technique finds there is no solution
+     */
+    private boolean apply(Technique t)
+    {
+        switch (t) {
+        case NAKED_SINGLE:
+            return nakedSingles();
+            
+        case HIDDEN_SINGLE:
+            return hiddenSingles();
+            
+        case INEQUALITY:
+            return inequalities();
+            
+        case CHAIN:
+            return ruleGraph.propagateAll(poss);
+            
+        case HALL_SET:
+            for (int[] unit : units) {
+                if (!matching.filter(poss, unit)) {
+                    return false;
+                }
+            }
+            return true;
+            
+        default:
+            throw new IllegalArgumentException(t.toString());
+        }
+    }
+    
+    /**
+     * Take the value of each cell with only one possibility away from the
+     * other cells in its row and column.
+     */
+    private boolean nakedSingles()
+    {
+        for (int[] unit : units) {
+            long once = 0, twice = 0;
+            
+            for (int i : unit) {
+                long m = poss.mask(i);
+                if (m == 0) {
+                    return false;
+                }
+                if (Long.bitCount(m) == 1) {
+                    twice |= once & m;
+                    once |= m;
+                }
+            }
+            
+            if (twice != 0) {
+                /* One value fixed for two cells */
+                return false;
+            }
+            
+            if (once != 0) {
+                for (int i : unit) {
+                    long m = poss.mask(i);
+                    if (Long.bitCount(m) > 1) {
+                        poss.restrict(i, ~once);
+                    }
+                }
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Fix any cell that is the only place left for a value in its row or
+     * column.
+     */
+    private boolean hiddenSingles()
+    {
+        long all = Possibilities.allValues(length);
+        
+        for (int[] unit : units) {
+            long once = 0, twice = 0;
+            
+            for (int i : unit) {
+                long m = poss.mask(i);
+                twice |= once & m;
+                once |= m;
+            }
+            
+            if (once != all) {
+                /* Some value has nowhere to go */
+                return false;
+            }
+            
+            long hidden = once & ~twice;
+            
+            if (hidden != 0) {
+                for (int i : unit) {
+                    long m = poss.mask(i);
+                    if ((m & hidden) != 0 && !poss.restrict(i, hidden)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Bring the two cells of each rule into line with each other, once.
+     */
+    private boolean inequalities()
+    {
+        for (int k = 0; k < greater.length; k++) {
+            int a = greater[k], b = lesser[k];
+            long ma = poss.mask(a), mb = poss.mask(b);
+            
+            if (ma == 0 || mb == 0) {
+                return false;
+            }
+            
+            if (!poss.restrict(a, ~Possibilities.allValues(
+                            Possibilities.lowest(mb)))
+                    || !poss.restrict(b, Possibilities.allValues(
+                            Possibilities.highest(ma) - 1)))
+            {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Deduction techniques, in the order they're tried.
+     */
+    public enum Technique
+    {
+        /** A cell's only value is taken from the others in its lines */
+        NAKED_SINGLE(1),
+        
+        /** The only cell in a line left for some value must hold it */
+        HIDDEN_SINGLE(2),
+        
+        /** The two cells of a rule limit each other's bounds */
+        INEQUALITY(3),
+        
+        /** Bounds carried along whole chains of rules */
+        CHAIN(8),
+        
+        /** Cells in a line that between them must use a set of values */
+        HALL_SET(20);
+        
+        private final int cost;
+        
+        private Technique(int cost)
+        {
+            this.cost = cost;
+        }
+        
+        /**
+         * @return the score for each step using this technique
+         */
+        public int getCost()
+        {
+            return cost;
+        }
+    }
+}
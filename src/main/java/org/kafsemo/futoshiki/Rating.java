@@ -0,0 +1,129 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import org.kafsemo.futoshiki.Rater.Technique;
+
+/**
+ * The effort a {@link Rater} took to solve a puzzle: how many steps with
+ * each technique, and how much guessing.
+ * 
+ * @author Joseph Walton
+ */
+public class Rating
+{
+    private final boolean solved;
+    private final int[] steps;
+    private final int guesses, backtracks;
+    
+    Rating(boolean solved, int[] steps, int guesses, int backtracks)
+    {
+        this.solved = solved;
+        this.steps = steps.clone();
+        this.guesses = guesses;
+        this.backtracks = backtracks;
+    }
+    
+    /**
+     * @return false if the puzzle has no solution
+     */
+    public boolean isSolved()
+    {
+        return solved;
+    }
+    
+    /**
+     * @return how many times the technique made progress
+     */
+    public int getSteps(Technique t)
+    {
+        return steps[t.ordinal()];
+    }
+    
+    /**
+     * @return how many values were tried at points where no technique
+     * made progress
+     */
+    public int getGuesses()
+    {
+        return guesses;
+    }
+    
+    /**
+     * @return how many of the guesses led nowhere
+     */
+    public int getBacktracks()
+    {
+        return backtracks;
+    }
+    
+    /**
+     * @return the costliest technique used, or <code>null</code> if the
+     * givens alone left nothing to do
+     */
+    public Technique getHardest()
+    {
+        Technique hardest = null;
+        
+        for (Technique t : Technique.values()) {
+            if (steps[t.ordinal()] > 0) {
+                hardest = t;
+            }
+        }
+        
+        return hardest;
+    }
+    
+    /**
+     * @return the cost of every step, plus {@value Rater#GUESS_COST} for
+     * each guess
+     */
+    public int getScore()
+    {
+        int score = guesses * Rater.GUESS_COST;
+        
+        for (Technique t : Technique.values()) {
+            score += steps[t.ordinal()] * t.getCost();
+        }
+        
+        return score;
+    }
+    
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append(solved ? "Score " + getScore() : "No solution");
+        
+        for (Technique t : Technique.values()) {
+            if (steps[t.ordinal()] > 0) {
+                sb.append(", ").append(t).append(' ').append(steps[t.ordinal()]);
+            }
+        }
+        
+        if (guesses > 0) {
+            sb.append(", guesses ").append(guesses);
+            sb.append(", backtracks ").append(backtracks);
+        }
+        
+        return sb.toString();
+    }
+}
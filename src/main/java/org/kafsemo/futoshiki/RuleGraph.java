@@ -0,0 +1,222 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+import java.util.Arrays;
+
+/**
+ * The rules of a puzzle as links between cell indexes, used to propagate
+ * bounds outwards from only those cells whose possibilities have changed.
+ *
+ * @author Joseph Walton
+ */
+class RuleGraph extends Grid
+{
+    private static final int[] NONE = {};
+
+    /* For each cell, the cells it must exceed and the cells exceeding it */
+    private final int[][] lesser, greater;
+
+    /* Bounds for each cell implied by the chains of rules through it */
+    private final int[] chainMin, chainMax;
+
+    RuleGraph(Futoshiki f)
+    {
+        super(f.getLength());
+
+        final int cells = length * length;
+
+        int[] lesserCount = new int[cells],
+            greaterCount = new int[cells];
+
+        for (GtRule r : f.getRules()) {
+            lesserCount[idx(r.getGreaterColumn(), r.getGreaterRow())]++;
+            greaterCount[idx(r.getLesserColumn(), r.getLesserRow())]++;
+        }
+
+        lesser = new int[cells][];
+        greater = new int[cells][];
+
+        for (int i = 0; i < cells; i++) {
+            lesser[i] = (lesserCount[i] > 0) ? new int[lesserCount[i]] : NONE;
+            greater[i] = (greaterCount[i] > 0) ? new int[greaterCount[i]] : NONE;
+            lesserCount[i] = 0;
+            greaterCount[i] = 0;
+        }
+
+        for (GtRule r : f.getRules()) {
+            int a = idx(r.getGreaterColumn(), r.getGreaterRow()),
+                b = idx(r.getLesserColumn(), r.getLesserRow());
+
+            lesser[a][lesserCount[a]++] = b;
+            greater[b][greaterCount[b]++] = a;
+        }
+
+        chainMin = new int[cells];
+        chainMax = new int[cells];
+
+        int[] seen = new int[cells];
+        int[] stack = new int[cells + 1];
+        int[] lineCounts = new int[length * 2];
+        int stamp = 0;
+
+        for (int i = 0; i < cells; i++) {
+            chainMin[i] = 1 + longestLine(i, lesser, seen, ++stamp, stack,
+                                            lineCounts);
+            chainMax[i] = length - longestLine(i, greater, seen, ++stamp, stack,
+                                                lineCounts);
+        }
+    }
+
+    /**
+     * Follow the chains of rules from a cell and find the greatest number
+     * of cells reached that share a single row or column. Those cells must
+     * all hold different values, all beyond the starting cell's value.
+     *
+     * @return the number of cells, or the puzzle length if the chains lead
+     * back to the starting cell
+     */
+    private int longestLine(int start, int[][] links, int[] seen, int stamp,
+            int[] stack, int[] lineCounts)
+    {
+        if (links[start].length == 0) {
+            return 0;
+        }
+
+        Arrays.fill(lineCounts, 0);
+
+        int longest = 0;
+        int top = 0;
+        stack[top++] = start;
+
+        while (top > 0) {
+            int i = stack[--top];
+
+            for (int j : links[i]) {
+                if (j == start) {
+                    /* A cycle; no value can satisfy it */
+                    return length;
+                }
+
+                if (seen[j] != stamp) {
+                    seen[j] = stamp;
+                    stack[top++] = j;
+
+                    longest = Math.max(longest, ++lineCounts[j / length]);
+                    longest = Math.max(longest,
+                                        ++lineCounts[length + j % length]);
+                }
+            }
+        }
+
+        return longest;
+    }
+
+    /**
+     * Whether a cell shares a rule with any cell still without a value.
+     */
+    boolean linksBlank(int i, Futoshiki f)
+    {
+        for (int j : lesser[i]) {
+            if (f.get(j % length + 1, j / length + 1) == 0) {
+                return true;
+            }
+        }
+
+        for (int j : greater[i]) {
+            if (f.get(j % length + 1, j / length + 1) == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Restrict every cell to the bounds implied by its chains of rules,
+     * then propagate until nothing more can be learned.
+     *
+     * @return false if some cell has no possibilities left
+     */
+    boolean propagateAll(Possibilities poss)
+    {
+        for (int i = 0; i < chainMin.length; i++) {
+            long allowed = Possibilities.allValues(chainMax[i])
+                & ~Possibilities.allValues(chainMin[i] - 1);
+
+            if (!poss.restrict(i, allowed)) {
+                poss.clearQueue();
+                return false;
+            }
+
+            if (lesser[i].length > 0 || greater[i].length > 0) {
+                poss.enqueue(i);
+            }
+        }
+
+        return propagate(poss);
+    }
+
+    /**
+     * Take cells from the queue of changed cells and bring the cells on
+     * the other side of their rules into line, which may queue those cells
+     * in turn. Bounds therefore travel along whole chains of rules.
+     *
+     * @return false if some cell has no possibilities left
+     */
+    boolean propagate(Possibilities poss)
+    {
+        int i;
+
+        while ((i = poss.poll()) >= 0) {
+            long m = poss.mask(i);
+
+            if (m == 0) {
+                poss.clearQueue();
+                return false;
+            }
+
+            if (greater[i].length > 0) {
+                /* Anything greater than this cell exceeds its minimum */
+                long above = ~Possibilities.allValues(Possibilities.lowest(m));
+
+                for (int j : greater[i]) {
+                    if (!poss.restrict(j, above)) {
+                        poss.clearQueue();
+                        return false;
+                    }
+                }
+            }
+
+            if (lesser[i].length > 0) {
+                /* Anything less than this cell is below its maximum */
+                long below = Possibilities.allValues(Possibilities.highest(m) - 1);
+
+                for (int j : lesser[i]) {
+                    if (!poss.restrict(j, below)) {
+                        poss.clearQueue();
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+}
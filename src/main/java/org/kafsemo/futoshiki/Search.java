@@ -0,0 +1,671 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.kafsemo.futoshiki.Solver.Progress;
+import org.kafsemo.futoshiki.Solver.SolutionTarget;
+
+/**
+ * The state of a single search. Rather than copying state for each
+ * attempt, the puzzle and the possibilities are changed in place and
+ * restored from the undo trail before the next attempt.
+ * 
+ * @author Joseph Walton
+ */
+class Search
+{
+    /* How many attempts between estimates of progress */
+    static final int REPORT_INTERVAL = 1024;
+    
+    /* How many attempts between checks of the clock and cancellation */
+    static final int CHECK_INTERVAL = 256;
+    
+    /* The most blanks in a line to count directly */
+    private static final int MAX_IN_LINE = 16;
+    
+    private final SolutionTarget target;
+    private final Futoshiki f;
+    private final CellPos[] blank;
+    private final Possibilities poss;
+    private final Propagator propagator;
+    private final RuleGraph rules;
+    private final Progress progress;
+    
+    /* Scratch space, one row for each blank */
+    private final BigInteger[][] candidateCounts;
+    
+    /* Scratch space for counting, one entry for each set of values, made
+       when first needed; searches that never count never need it */
+    private long[] waysScratch;
+    
+    /* Scratch space for counting, the renumbered values for each blank */
+    private int[] lineScratch;
+    
+    /* For estimates: the starting total, and the fraction searched so far */
+    private final BigInteger total;
+    private double searched;
+    private int untilReport = REPORT_INTERVAL;
+    
+    /* Limits on the search, and why it stopped if one was reached */
+    private long nodeLimit = Long.MAX_VALUE;
+    private long deadline;
+    private boolean hasDeadline;
+    private Cancellation cancellation;
+    private int untilCheck = 1;
+    private Outcome.Status limitReached;
+    
+    /* Counters for this search, and whether to time its parts */
+    private final SolverStats stats = new SolverStats();
+    private boolean timing;
+    
+    /* Counts already known for possibilities, if remembering them, and
+       the words for the values placed while counting, to leave out */
+    private TranspositionTable table;
+    private long placedA, placedB;
+    
+    /**
+     * @param target where to send solutions, or <code>null</code> if only
+     * counting
+     * @param progress how to report the remaining possibilities to the
+     * target during the search
+     */
+    Search(SolutionTarget target, Futoshiki f, CellPos[] blank,
+            Possibilities poss, Propagator propagator, Progress progress)
+    {
+        this.target = target;
+        this.f = f;
+        this.blank = blank;
+        this.poss = poss;
+        this.propagator = propagator;
+        this.rules = propagator.getRules();
+        this.progress = progress;
+        this.candidateCounts = (progress == Progress.EXACT)
+            ? new BigInteger[blank.length][f.getLength()]
+            : null;
+        this.total = (progress == Progress.ESTIMATED) ? poss.size() : null;
+    }
+    
+    /**
+     * Limit the search. The node limit is checked before every attempt;
+     * the clock and the cancellation only every {@link #CHECK_INTERVAL}
+     * attempts, starting with the first.
+     * 
+     * @param nodeLimit the most attempts to make
+     * @param deadline a time from {@link System#nanoTime()} to stop at,
+     * if <code>hasDeadline</code>
+     * @param cancellation a token to stop at, or <code>null</code>
+     */
+    void setLimits(long nodeLimit, long deadline, boolean hasDeadline,
+            Cancellation cancellation)
+    {
+        this.nodeLimit = nodeLimit;
+        this.deadline = deadline;
+        this.hasDeadline = hasDeadline;
+        this.cancellation = cancellation;
+    }
+    
+    /**
+     * Count an attempt, and find whether any limit has been reached.
+     */
+    private boolean withinLimits()
+    {
+        if (stats.nodes >= nodeLimit) {
+            limitReached = Outcome.Status.EXHAUSTED;
+            return false;
+        }
+        
+        stats.nodes++;
+        
+        if (--untilCheck == 0) {
+            untilCheck = CHECK_INTERVAL;
+            
+            if (cancellation != null && cancellation.isCancelled()) {
+                limitReached = Outcome.Status.CANCELLED;
+                return false;
+            }
+            
+            if (hasDeadline && System.nanoTime() - deadline >= 0) {
+                limitReached = Outcome.Status.TIMED_OUT;
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * @return the limit that stopped the search, or <code>null</code> if
+     * none did
+     */
+    Outcome.Status getLimitReached()
+    {
+        return limitReached;
+    }
+    
+    /**
+     * Choose whether to time propagation and validity checks, at the cost
+     * of reading the clock around each.
+     */
+    void setTiming(boolean timing)
+    {
+        this.timing = timing;
+    }
+    
+    /**
+     * Remember the counts of the possibilities met while counting, which
+     * must be hashed, and use those counts when they are met again.
+     * 
+     * @param table the counts, or <code>null</code> to count every time
+     */
+    void setTranspositionTable(TranspositionTable table)
+    {
+        this.table = table;
+    }
+    
+    /**
+     * @return the counters for this search so far
+     */
+    SolverStats getStats()
+    {
+        return stats;
+    }
+    
+    /**
+     * Checked before each attempt, to abandon a search from outside.
+     */
+    protected boolean isStopped()
+    {
+        return false;
+    }
+    
+    /**
+     * Fix a value for a cell and propagate the consequences.
+     * 
+     * @return false if some cell is left with no possibilities
+     */
+    private boolean use(CellPos p, int v)
+    {
+        stats.propagations++;
+        
+        if (!timing) {
+            poss.use(p.column, p.row, v);
+            return propagator.propagate(poss);
+        }
+        
+        long start = System.nanoTime();
+        poss.use(p.column, p.row, v);
+        boolean consistent = propagator.propagate(poss);
+        stats.propagationNanos += System.nanoTime() - start;
+        
+        return consistent;
+    }
+    
+    /**
+     * Check the puzzle's rules against the values placed so far.
+     */
+    private boolean isValid()
+    {
+        boolean valid;
+        
+        if (!timing) {
+            valid = f.isValid();
+        } else {
+            long start = System.nanoTime();
+            valid = f.isValid();
+            stats.validityNanos += System.nanoTime() - start;
+        }
+        
+        if (!valid) {
+            stats.backtracks++;
+        }
+        
+        return valid;
+    }
+    
+    /**
+     * Note the depth of a new attempt.
+     */
+    private void reached(int nb)
+    {
+        if (nb > stats.maxDepth) {
+            stats.maxDepth = nb;
+        }
+    }
+    
+    /**
+     * Search from the first blank, reporting progress as chosen.
+     * 
+     * @return false if the search was stopped
+     */
+    boolean solve()
+    {
+        if (progress == Progress.EXACT) {
+            return solveExactly(0, BigInteger.ZERO);
+        } else {
+            return solve(0, 1.0);
+        }
+    }
+    
+    /**
+     * Accept a puzzle state and, if it is valid and if there are still
+     * blank squares, try every number. Recurse for all attempts. If there
+     * are no blanks remaining then print what must be a solution.
+     * <p>
+     * When estimating progress, every few attempts the target is told
+     * roughly how many possibilities remain, in proportion to the part of
+     * the search not yet covered. Each attempt covers an equal part of its
+     * parent's share.
+     * 
+     * @param nb the index of the next remaining blank
+     * @param share the part of the whole search below this point
+     * @return false if the search should stop
+     */
+    boolean solve(int nb, double share)
+    {
+        if (!withinLimits() || isStopped()) {
+            return false;
+        }
+        
+        reached(nb);
+        
+        if (total != null && --untilReport == 0) {
+            untilReport = REPORT_INTERVAL;
+            
+            if (!target.remainingPossibilities(estimate())) {
+                return false;
+            }
+        }
+        
+        if (!isValid()) {
+            return true;
+        }
+        
+        if (nb >= blank.length) {
+            stats.solutions++;
+            return target.solution(f.clone());
+        }
+        
+        moveBlankWithLeastPossibilitiesIntoPlace(blank, nb, poss);
+        
+        CellPos p = blank[nb];
+        long candidates = poss.mask(p.column, p.row);
+        
+        double childShare = share / Math.max(Long.bitCount(candidates), 1);
+        boolean more = true;
+        
+        for (long m = candidates; more && m != 0; m &= m - 1) {
+            int v = Possibilities.lowest(m);
+            int mark = poss.mark();
+            f.set(p.column, p.row, v);
+            if (use(p, v)) {
+                more = solve(nb + 1, childShare);
+            } else {
+                stats.backtracks++;
+            }
+            if (more) {
+                searched += childShare;
+            }
+            poss.undo(mark);
+        }
+        
+        f.clear(p.column, p.row);
+        
+        return more;
+    }
+    
+    /**
+     * @return the starting total in proportion to the part of the search
+     * not yet covered
+     */
+    private BigInteger estimate()
+    {
+        double remaining = Math.min(Math.max(1.0 - searched, 0.0), 1.0);
+        
+        return BigInteger.valueOf((long) (remaining * (1L << 62)))
+            .multiply(total).shiftRight(62);
+    }
+    
+    /**
+     * As {@link #solve(int, double)}, but count exactly the possibilities
+     * that would remain after each attempt and report them before it.
+     * 
+     * @param nb the index of the next remaining blank
+     * @param possibilitiesAfter the possibilities left in the rest of the
+     * search
+     * @return false if the search should stop
+     */
+    boolean solveExactly(int nb, BigInteger possibilitiesAfter)
+    {
+        if (!withinLimits() || isStopped()) {
+            return false;
+        }
+        
+        reached(nb);
+        
+        if (!isValid()) {
+            return true;
+        }
+        
+        if (nb >= blank.length) {
+            stats.solutions++;
+            return target.solution(f.clone());
+        }
+        
+        moveBlankWithLeastPossibilitiesIntoPlace(blank, nb, poss);
+        
+        CellPos p = blank[nb];
+        long candidates = poss.mask(p.column, p.row);
+
+        // Calculate the remaining number if each choice was made
+        // Before each recursion, report back the total
+        
+        BigInteger[] possibilitiesForValue = candidateCounts[nb];
+        
+        int i = 0;
+        
+        for (long m = candidates; m != 0; m &= m - 1) {
+            int mark = poss.mark();
+            if (use(p, Possibilities.lowest(m))) {
+                possibilitiesForValue[i] = poss.size();
+            } else {
+                possibilitiesForValue[i] = BigInteger.ZERO;
+            }
+            poss.undo(mark);
+            i++;
+        }
+
+        BigInteger remainingPossibilities = sum(possibilitiesForValue, i);
+        remainingPossibilities =
+            remainingPossibilities.add(possibilitiesAfter);
+        
+        boolean more = true;
+        int j = 0;
+        
+        for (long m = candidates; more && m != 0; m &= m - 1, j++) {
+            /* Skip values already known to lead nowhere */
+            if (possibilitiesForValue[j].signum() == 0) {
+                stats.backtracks++;
+                continue;
+            }
+            
+            if (!target.remainingPossibilities(remainingPossibilities)) {
+                more = false;
+            } else {
+                int v = Possibilities.lowest(m);
+                int mark = poss.mark();
+                f.set(p.column, p.row, v);
+                use(p, v);
+                remainingPossibilities = remainingPossibilities.subtract(
+                        possibilitiesForValue[j]);
+                more = solveExactly(nb + 1, remainingPossibilities);
+                poss.undo(mark);
+            }
+        }
+        
+        f.clear(p.column, p.row);
+        
+        return more;
+    }
+
+    /**
+     * Count the solutions below this point of the search, without making
+     * a puzzle for each.
+     * 
+     * @param nb the index of the next remaining blank
+     * @throws ArithmeticException if the count will not fit in a long
+     */
+    long count(int nb)
+    {
+        if (!withinLimits()) {
+            return 0;
+        }
+        
+        reached(nb);
+        
+        if (!isValid()) {
+            return 0;
+        }
+        
+        if (nb >= blank.length) {
+            return 1;
+        }
+        
+        long inLine = countInLine(nb);
+        if (inLine >= 0) {
+            return inLine;
+        }
+        
+        /*
+         * Each placed value has already been removed from the cells in
+         * its row and column and brought the cells it shares rules with
+         * into line, so the count below depends only on the cells still
+         * blank and their possibilities. Leave the placed cells out of
+         * the keys; the same blanks are often reached by placing the
+         * same values in different cells.
+         */
+        long keyA = poss.keyA() ^ placedA, keyB = poss.keyB() ^ placedB;
+        
+        if (table != null) {
+            long known = table.get(keyA, keyB);
+            if (known >= 0) {
+                stats.cacheHits++;
+                return known;
+            }
+        }
+        
+        moveBlankWithLeastPossibilitiesIntoPlace(blank, nb, poss);
+        
+        CellPos p = blank[nb];
+        long total = 0;
+        
+        for (long m = poss.mask(p.column, p.row);
+                m != 0 && limitReached == null; m &= m - 1)
+        {
+            int v = Possibilities.lowest(m);
+            int mark = poss.mark();
+            f.set(p.column, p.row, v);
+            if (table != null) {
+                placed(p, v);
+            }
+            if (use(p, v)) {
+                total = add(total, count(nb + 1));
+            } else {
+                stats.backtracks++;
+            }
+            if (table != null) {
+                placed(p, v);
+            }
+            poss.undo(mark);
+        }
+        
+        f.clear(p.column, p.row);
+        
+        /* A count cut short is only part of the total */
+        if (table != null && limitReached == null) {
+            table.put(keyA, keyB, total);
+        }
+        
+        return total;
+    }
+    
+    /**
+     * Add a placed value to the words to leave out of the keys, or take
+     * it out again.
+     */
+    private void placed(CellPos p, int v)
+    {
+        placedA ^= poss.wordA(p.column, p.row, v);
+        placedB ^= poss.wordB(p.column, p.row, v);
+    }
+    
+    /**
+     * When the remaining blanks all lie in one row or one column, with no
+     * rules between them, each solution is a different choice of value for
+     * each cell from its possibilities. Count those choices directly, over
+     * the sets of values used so far, with the values that appear numbered
+     * from zero to keep the sets small.
+     * 
+     * @return the number of solutions, or -1 if the blanks are not in line
+     */
+    private long countInLine(int nb)
+    {
+        int k = blank.length - nb;
+        
+        if (k > MAX_IN_LINE) {
+            return -1;
+        }
+        
+        CellPos first = blank[nb];
+        long present = 0;
+        boolean sameRow = true, sameColumn = true;
+        
+        for (int i = nb; i < blank.length; i++) {
+            CellPos p = blank[i];
+            
+            sameRow &= (p.row == first.row);
+            sameColumn &= (p.column == first.column);
+            
+            if ((!sameRow && !sameColumn)
+                    || rules.linksBlank(poss.idx(p.column, p.row), f))
+            {
+                return -1;
+            }
+            
+            present |= poss.mask(p.column, p.row);
+        }
+        
+        if (Long.bitCount(present) > k) {
+            return -1;
+        }
+        
+        if (waysScratch == null) {
+            int most = Math.min(f.getLength(), MAX_IN_LINE);
+            waysScratch = new long[1 << most];
+            lineScratch = new int[most];
+        }
+        
+        int[] masks = lineScratch;
+        
+        for (int i = 0; i < k; i++) {
+            CellPos p = blank[nb + i];
+            masks[i] = renumber(poss.mask(p.column, p.row), present);
+        }
+        
+        long[] ways = waysScratch;
+        int sets = 1 << Long.bitCount(present);
+        
+        Arrays.fill(ways, 0, sets, 0);
+        ways[0] = 1;
+        
+        long total = 0;
+        
+        /* Each set of values is reached from its subsets, visited earlier */
+        for (int used = 0; used < sets; used++) {
+            if (ways[used] == 0) {
+                continue;
+            }
+            
+            int c = Integer.bitCount(used);
+            
+            if (c == k) {
+                total += ways[used];
+                continue;
+            }
+            
+            for (int m = masks[c] & ~used; m != 0; m &= m - 1) {
+                ways[used | (m & -m)] += ways[used];
+            }
+        }
+        
+        return total;
+    }
+    
+    /**
+     * @return the values from a mask, numbered by their position among
+     * the values present
+     */
+    private static int renumber(long mask, long present)
+    {
+        int r = 0;
+        int j = 0;
+        
+        for (long m = present; m != 0; m &= m - 1, j++) {
+            if ((mask & m & -m) != 0) {
+                r |= 1 << j;
+            }
+        }
+        
+        return r;
+    }
+    
+    private static long add(long a, long b)
+    {
+        if (a > Long.MAX_VALUE - b) {
+            throw new ArithmeticException("Solution count overflow");
+        }
+        
+        return a + b;
+    }
+    
+    /**
+     * Swap the blank with the fewest possibilities, from those at or
+     * after <code>p</code>, into position <code>p</code>.
+     */
+    static void moveBlankWithLeastPossibilitiesIntoPlace(CellPos[] blanks,
+            int p, Possibilities poss)
+    {
+        int fewestIdx = -1;
+        int fewest = Integer.MAX_VALUE;
+        
+        for (int i = p; i < blanks.length; i++) {
+            int count = poss.possibleCount(blanks[i]);
+            
+            if (count < fewest) {
+                fewestIdx = i;
+                fewest = count;
+                
+                /* Nothing will beat an empty cell */
+                if (count == 0) {
+                    break;
+                }
+            }
+        }
+        
+        if (fewestIdx >= 0 && fewestIdx != p) {
+            CellPos cp = blanks[p];
+            blanks[p] = blanks[fewestIdx];
+            blanks[fewestIdx] = cp;
+        }
+    }
+    
+    private static BigInteger sum(BigInteger[] a, int maxIndex)
+    {
+        BigInteger total = BigInteger.ZERO;
+        
+        for (int i = 0; i < maxIndex; i++) {
+            total = total.add(a[i]);
+        }
+        
+        return total;
+    }
+}
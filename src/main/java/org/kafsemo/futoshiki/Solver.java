@@ -19,6 +19,8 @@
 package org.kafsemo.futoshiki;
 
 import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 
@@ -34,137 +36,422 @@ public class Solver
     private static final BigInteger FIVE_BY_FIVE_COMBINATIONS =
         new BigInteger("298023223876953125");
     
+    /* Keys need only differ from each other, not from run to run */
+    private static final long HASH_SEED = 0x46555453L;
+    
     private final SolutionTarget target;
     
+    private AllDifferent allDifferent = AllDifferent.NONE;
+    private Progress progress = Progress.NONE;
+    
+    private long nodeLimit = Long.MAX_VALUE;
+    private long timeLimitNanos;
+    private Cancellation cancellation;
+    
+    private boolean timing;
+    private SolverMonitor monitor;
+    
+    private int countCache;
+    
+    /**
+     * Create a solver that will only {@link #count(Futoshiki) count}
+     * solutions or {@link #check(Futoshiki) check} for a unique one.
+     */
+    public Solver()
+    {
+        this(null);
+    }
+    
     public Solver(SolutionTarget target)
     {
         this.target = target;
     }
     
-    public void solve(Futoshiki f)
+    /**
+     * Choose how much reasoning to apply to each row and column holding
+     * different values, after each number is tried.
+     */
+    public void setAllDifferent(AllDifferent allDifferent)
+    {
+        this.allDifferent = allDifferent;
+    }
+    
+    public AllDifferent getAllDifferent()
+    {
+        return allDifferent;
+    }
+    
+    /**
+     * Choose how the target is told of the possibilities remaining as the
+     * search proceeds. Whatever the choice, it is told the total at the
+     * start and zero at the end of a search that runs to completion.
+     */
+    public void setProgress(Progress progress)
+    {
+        this.progress = progress;
+    }
+    
+    public Progress getProgress()
+    {
+        return progress;
+    }
+    
+    /**
+     * Limit each search to a number of attempts, each a value tried for
+     * a cell.
+     */
+    public void setNodeLimit(long nodeLimit)
+    {
+        if (nodeLimit < 1) {
+            throw new IllegalArgumentException("Node limit must be positive: "
+                    + nodeLimit);
+        }
+        
+        this.nodeLimit = nodeLimit;
+    }
+    
+    public long getNodeLimit()
     {
+        return nodeLimit;
+    }
+    
+    /**
+     * Limit the time taken by each search, from when it starts.
+     * 
+     * @param time the limit, or zero for none
+     */
+    public void setTimeLimit(long time, TimeUnit unit)
+    {
+        if (time < 0) {
+            throw new IllegalArgumentException("Time limit must not be negative: "
+                    + time);
+        }
+        
+        this.timeLimitNanos = unit.toNanos(time);
+    }
+    
+    /**
+     * @return the time limit, or zero for none
+     */
+    public long getTimeLimit(TimeUnit unit)
+    {
+        return unit.convert(timeLimitNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Stop searching once this token is cancelled.
+     * 
+     * @param cancellation the token, or <code>null</code> for none
+     */
+    public void setCancellation(Cancellation cancellation)
+    {
+        this.cancellation = cancellation;
+    }
+    
+    public Cancellation getCancellation()
+    {
+        return cancellation;
+    }
+    
+    /**
+     * Choose whether to time propagation and rule checks during each
+     * search. Reading the clock so often slows the search a little, so
+     * it is off unless asked for.
+     */
+    public void setTiming(boolean timing)
+    {
+        this.timing = timing;
+    }
+    
+    public boolean isTiming()
+    {
+        return timing;
+    }
+    
+    /**
+     * Report the statistics of every search to a monitor as it ends.
+     * 
+     * @param monitor the monitor, or <code>null</code> for none
+     */
+    public void setMonitor(SolverMonitor monitor)
+    {
+        this.monitor = monitor;
+    }
+    
+    public SolverMonitor getMonitor()
+    {
+        return monitor;
+    }
+    
+    /**
+     * Remember the counts of subproblems while {@link #count(Futoshiki)
+     * counting}, so that possibilities reached again by placing values in
+     * a different order are only counted once. Each count has a table of
+     * its own, of about 24 bytes per entry.
+     * 
+     * @param entries the most counts to remember, or zero for none
+     */
+    public void setCountCache(int entries)
+    {
+        if (entries < 0) {
+            throw new IllegalArgumentException(
+                    "Cache size must not be negative: " + entries);
+        }
+        
+        this.countCache = entries;
+    }
+    
+    public int getCountCache()
+    {
+        return countCache;
+    }
+    
+    /**
+     * Create a propagator for a single search, with its own scratch space.
+     * The rules are never changed and may be shared between searches.
+     */
+    static Propagator propagator(RuleGraph rules, AllDifferent allDifferent)
+    {
+        AllDifferentFilter filter;
+        
+        switch (allDifferent) {
+            case BOUNDS:
+                filter = new HallIntervalFilter(rules.getLength());
+                break;
+                
+            case MATCHING:
+                filter = new MatchingFilter(rules.getLength());
+                break;
+                
+            default:
+                filter = null;
+                break;
+        }
+        
+        return new Propagator(rules, filter);
+    }
+    
+    /**
+     * Search for solutions and pass each to the target, until the target
+     * wants no more, the search is over or a limit is reached.
+     */
+    public Outcome solve(Futoshiki f)
+    {
+        if (target == null) {
+            throw new IllegalStateException("No target for solutions");
+        }
+        
+        long start = System.nanoTime();
+        SolverEvents events = new SolverEvents(f);
+        
+        if (cancellation != null && cancellation.isCancelled()) {
+            return finish(Outcome.Status.CANCELLED, new SolverStats(), start,
+                    events);
+        }
+        
+        /* Work on a private copy, changed in place as the search proceeds */
+        f = f.clone();
+        
         CellPos[] blanks = f.blankCells().toArray(CELLPOS_ARRAY);
+        Propagator propagator = propagator(new RuleGraph(f), allDifferent);
         Possibilities poss = new Possibilities(f.getLength());
-        poss.use(f);
+        boolean consistent = poss.use(f, propagator);
         BigInteger count = poss.size();
-        log.fine("Solution possibilities: " + poss.size());
+        log.fine("Solution possibilities: " + count);
         if (count.compareTo(FIVE_BY_FIVE_COMBINATIONS) > 0) {
             log.fine("This may take an extremely long time");
         }
         if (!target.remainingPossibilities(count)) {
-            return;
+            return finish(Outcome.Status.SOLVED, new SolverStats(), start,
+                    events);
         }
-        if (solve(f, blanks, 0, poss, BigInteger.ZERO)) {
+        
+        poss.startTrail();
+        Search search = new Search(target, f, blanks, poss, propagator,
+                progress);
+        limit(search, start);
+        
+        if (!consistent || search.solve()) {
             target.remainingPossibilities(BigInteger.ZERO);
         }
+        
+        return finish(search, start, events);
     }
     
     /**
-     * Accept a puzzle state and, if it is valid and if there are still blank
-     * squares, try every number. Recurse for all attempts. If there are no
-     * blanks remaining then print what must be a solution.
+     * Apply this solver's limits and choice of timing to a search.
+     */
+    private void limit(Search search, long start)
+    {
+        search.setLimits(nodeLimit, start + timeLimitNanos, timeLimitNanos > 0,
+                cancellation);
+        search.setTiming(timing);
+    }
+    
+    /**
+     * Report a search as stopped by whichever limit it reached, if any.
+     */
+    private Outcome finish(Search search, long start, SolverEvents events)
+    {
+        Outcome.Status status = search.getLimitReached();
+        
+        return finish((status != null) ? status : Outcome.Status.SOLVED,
+                search.getStats(), start, events);
+    }
+    
+    /**
+     * Stamp the statistics with the time taken and report them.
+     */
+    private Outcome finish(Outcome.Status status, SolverStats stats,
+            long start, SolverEvents events)
+    {
+        stats.elapsedNanos = System.nanoTime() - start;
+        events.end(status, stats);
+        
+        if (monitor != null) {
+            monitor.record(status, stats);
+        }
+        
+        return new Outcome(status, stats);
+    }
+    
+    /**
+     * Count the solutions to a puzzle without reporting each one, or
+     * any progress.
      * 
-     * @param f
-     * @param blank
-     * @param nb the index of the next remaining blank
+     * @throws ArithmeticException if there are too many solutions to count
+     * in a long
+     * @throws LimitReachedException if a limit stops the count before
+     * it is complete
      */
-    private boolean solve(Futoshiki f, CellPos[] blank, int nb,
-            Possibilities poss, BigInteger possibilitiesAfter)
+    public long count(Futoshiki f)
     {
-        if (!f.isValid()) {
-            return true;
+        long start = System.nanoTime();
+        SolverEvents events = new SolverEvents(f);
+        
+        f = f.clone();
+        
+        CellPos[] blanks = f.blankCells().toArray(CELLPOS_ARRAY);
+        Propagator propagator = propagator(new RuleGraph(f), allDifferent);
+        Possibilities poss = new Possibilities(f.getLength());
+        
+        if (!poss.use(f, propagator)) {
+            finish(Outcome.Status.SOLVED, new SolverStats(), start, events);
+            return 0;
         }
         
-        if (nb >= blank.length) {
-            return target.solution(f);
+        poss.startTrail();
+        
+        Search search = new Search(null, f, blanks, poss, propagator,
+                Progress.NONE);
+        limit(search, start);
+        
+        if (countCache > 0) {
+            poss.startHashing(new Random(HASH_SEED));
+            search.setTranspositionTable(new TranspositionTable(countCache));
         }
         
-        blank = moveBlankWithLeastPossibilitiesIntoPlace(blank, nb, poss);
+        long count = search.count(0);
+        Outcome outcome = finish(search, start, events);
         
-        CellPos p = blank[nb];
-
-        // Generate a collection of possibilities
-        // Calculate the remaining number if each choice was made
-        // Before each recursion, report back the total
-        
-        int[] possibleValues = new int[f.getLength()];
-        BigInteger[] possibilitiesForValue = new BigInteger[f.getLength()];
-        Possibilities[] possibilities = new Possibilities[f.getLength()];
-        
-        int i = 0;
-        
-        for (int v = 1; v <= f.getLength(); v++) {
-            if (poss.isPossible(p.column, p.row, v)) {
-                possibleValues[i] = v;
-                Possibilities ps = poss.clone();
-                ps.use(p.column, p.row, v);
-                possibilities[i] = ps;
-                possibilitiesForValue[i] = ps.size();
-                i++;
-            }
+        if (outcome.getStatus() != Outcome.Status.SOLVED) {
+            throw new LimitReachedException(outcome);
         }
-
-        BigInteger remainingPossibilities = sum(possibilitiesForValue, i);
-        remainingPossibilities = remainingPossibilities.add(possibilitiesAfter);
         
-        for (int j = 0; j < i; j++) {
-            if (!target.remainingPossibilities(remainingPossibilities)) {
-                return false;
-            }
-            int v = possibleValues[j];
-            f.set(p.column, p.row, v);
-            remainingPossibilities =
-                remainingPossibilities.subtract(possibilitiesForValue[j]);
-            boolean more = solve(f.clone(), blank, nb + 1, possibilities[j],
-                                    remainingPossibilities);
-            if (!more) {
-                return false;
-            }
+        return count;
+    }
+    
+    /**
+     * Find whether a puzzle has a single solution, stopping as soon as
+     * a second is found. The choice of reasoning is ignored in favour of
+     * the strongest, and no progress is reported. If a limit is reached
+     * before the answer is known, it is {@link Uniqueness.Status#UNKNOWN}.
+     */
+    public Uniqueness check(Futoshiki f)
+    {
+        long start = System.nanoTime();
+        SolverEvents events = new SolverEvents(f);
+        
+        f = f.clone();
+        
+        CellPos[] blanks = f.blankCells().toArray(CELLPOS_ARRAY);
+        Propagator propagator =
+            propagator(new RuleGraph(f), AllDifferent.MATCHING);
+        Possibilities poss = new Possibilities(f.getLength());
+        
+        if (!poss.use(f, propagator)) {
+            return new Uniqueness(null, null, finish(Outcome.Status.SOLVED,
+                    new SolverStats(), start, events));
         }
         
-        return true;
+        poss.startTrail();
+        
+        SecondSolutionTarget sst = new SecondSolutionTarget();
+        Search search = new Search(sst, f, blanks, poss, propagator,
+                Progress.NONE);
+        limit(search, start);
+        search.solve();
+        
+        return new Uniqueness(sst.solution, sst.otherSolution,
+                finish(search, start, events));
     }
-
-    private CellPos[] moveBlankWithLeastPossibilitiesIntoPlace(CellPos[] blanks,
-            int p, Possibilities poss)
+    
+    /**
+     * Keep the first two solutions, and stop at the second.
+     */
+    private static class SecondSolutionTarget implements SolutionTarget
     {
-        int fewestIdx = -1;
+        Futoshiki solution, otherSolution;
         
-        for (int i = p; i < blanks.length; i++) {
-            if (fewestIdx >= 0) {
-                int p1 = poss.possibleCount(blanks[fewestIdx]);
-                int p2 = poss.possibleCount(blanks[i]);
-                
-                if (p2 < p1) {
-                    fewestIdx = i;
-                }
-                
-                
+        public boolean solution(Futoshiki f)
+        {
+            if (solution == null) {
+                solution = f;
+                return true;
             } else {
-                fewestIdx = i;
+                otherSolution = f;
+                return false;
             }
         }
         
-        if (fewestIdx >= 0 && fewestIdx != p) {
-            // Only necessary with multiple threads
-//            blanks = blanks.clone();
-            CellPos cp = blanks[p];
-            blanks[p] = blanks[fewestIdx];
-            blanks[fewestIdx] = cp;
+        public boolean remainingPossibilities(BigInteger count)
+        {
+            return true;
         }
+    }
+    
+    /**
+     * How much reasoning to apply to each row and column holding
+     * different values.
+     */
+    public enum AllDifferent
+    {
+        /** Only remove numbers already placed in the same row or column */
+        NONE,
+        
+        /** Remove values from Hall intervals, for bounds consistency */
+        BOUNDS,
         
-        return blanks;
+        /** Remove values outside every complete matching of cells to values */
+        MATCHING;
     }
     
-    private static BigInteger sum(BigInteger[] a, int maxIndex)
+    /**
+     * How the target is told of progress during a search.
+     */
+    public enum Progress
     {
-        BigInteger total = BigInteger.ZERO;
+        /** Not at all; the target may not stop the search part way */
+        NONE,
         
-        for (int i = 0; i < maxIndex; i++) {
-            total = total.add(a[i]);
-        }
+        /**
+         * Every thousand or so attempts, with a count in proportion to the
+         * part of the search not yet covered
+         */
+        ESTIMATED,
         
-        return total;
+        /** Before every attempt, with an exact count of possibilities left */
+        EXACT;
     }
     
     /**
@@ -0,0 +1,163 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder events for a single search: one as it starts, one as it
+ * ends and, for a search slower than the threshold, one carrying the
+ * puzzle itself. Nothing is measured or printed unless a recording wants
+ * the event, so a search costs next to nothing more without one.
+ * <p>
+ * The slow search threshold defaults to 100ms and may be changed in the
+ * recording's settings, as <code>org.kafsemo.futoshiki.SlowSolve#threshold</code>.
+ * 
+ * @author Joseph Walton
+ */
+class SolverEvents
+{
+    private final Futoshiki puzzle;
+    private final SolveEvent solve = new SolveEvent();
+    private final SlowSolveEvent slow = new SlowSolveEvent();
+    
+    /**
+     * Note the start of a search.
+     * 
+     * @param puzzle the puzzle as given, which must not change during the
+     * search
+     */
+    SolverEvents(Futoshiki puzzle)
+    {
+        this.puzzle = puzzle;
+        
+        SolveStartEvent start = new SolveStartEvent();
+        if (start.isEnabled()) {
+            start.describe(puzzle);
+            start.commit();
+        }
+        
+        solve.begin();
+        slow.begin();
+    }
+    
+    /**
+     * Note the end of the search.
+     */
+    void end(Outcome.Status status, SolverStats stats)
+    {
+        solve.end();
+        if (solve.shouldCommit()) {
+            solve.describe(puzzle);
+            solve.nodes = stats.nodes;
+            solve.solutions = stats.solutions;
+            solve.outcome = status.name();
+            solve.commit();
+        }
+        
+        slow.end();
+        if (slow.shouldCommit()) {
+            slow.describe(puzzle);
+            slow.nodes = stats.nodes;
+            slow.outcome = status.name();
+            slow.puzzle = FutoshikiPrinter.toString(puzzle);
+            slow.commit();
+        }
+    }
+    
+    /**
+     * The size of a puzzle and how much of it is given.
+     */
+    @Category("Futoshiki")
+    abstract static class PuzzleEvent extends Event
+    {
+        @Label("Length")
+        int length;
+        
+        @Label("Givens")
+        @Description("Cells with values in the puzzle as given")
+        int givens;
+        
+        @Label("Rules")
+        int rules;
+        
+        void describe(Futoshiki f)
+        {
+            length = f.getLength();
+            
+            givens = 0;
+            for (int r = 1; r <= length; r++) {
+                for (int c = 1; c <= length; c++) {
+                    if (f.get(c, r) != 0) {
+                        givens++;
+                    }
+                }
+            }
+            
+            rules = f.getRuleCount();
+        }
+    }
+    
+    @Name("org.kafsemo.futoshiki.SolveStart")
+    @Label("Solve Start")
+    @StackTrace(false)
+    static class SolveStartEvent extends PuzzleEvent
+    {
+    }
+    
+    @Name("org.kafsemo.futoshiki.Solve")
+    @Label("Solve")
+    @StackTrace(false)
+    static class SolveEvent extends PuzzleEvent
+    {
+        @Label("Nodes")
+        @Description("Values tried for cells")
+        long nodes;
+        
+        @Label("Solutions")
+        long solutions;
+        
+        @Label("Outcome")
+        String outcome;
+    }
+    
+    @Name("org.kafsemo.futoshiki.SlowSolve")
+    @Label("Slow Solve")
+    @Description("A search that took longer than the threshold")
+    @Threshold("100 ms")
+    static class SlowSolveEvent extends PuzzleEvent
+    {
+        @Label("Nodes")
+        long nodes;
+        
+        @Label("Outcome")
+        String outcome;
+        
+        @Label("Puzzle")
+        @Description("The puzzle as given, in text form")
+        String puzzle;
+    }
+}
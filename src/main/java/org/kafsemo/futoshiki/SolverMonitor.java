@@ -0,0 +1,166 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Adds up the statistics of every search by the solvers given it, and
+ * makes the totals available over JMX. Each search reports once, when
+ * it ends, so one monitor may be shared by many threads; or there may be
+ * one for each thread, registered under different names.
+ * 
+ * @author Joseph Walton
+ */
+public class SolverMonitor implements SolverStatsMXBean
+{
+    public static final String DEFAULT_NAME =
+        "org.kafsemo.futoshiki:type=SolverStats";
+    
+    private final SolverStats totals = new SolverStats();
+    private long solves, exhausted, timedOut, cancelled;
+    
+    synchronized void record(Outcome.Status status, SolverStats stats)
+    {
+        solves++;
+        
+        switch (status) {
+            case EXHAUSTED:
+                exhausted++;
+                break;
+                
+            case TIMED_OUT:
+                timedOut++;
+                break;
+                
+            case CANCELLED:
+                cancelled++;
+                break;
+                
+            default:
+                break;
+        }
+        
+        totals.add(stats);
+    }
+    
+    /**
+     * Register with the platform's MBean server under
+     * {@link #DEFAULT_NAME}.
+     */
+    public ObjectName register() throws JMException
+    {
+        return register(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(DEFAULT_NAME));
+    }
+    
+    public ObjectName register(MBeanServer server, ObjectName name)
+        throws JMException
+    {
+        return server.registerMBean(this, name).getObjectName();
+    }
+    
+    public synchronized long getSolves()
+    {
+        return solves;
+    }
+    
+    public synchronized long getExhausted()
+    {
+        return exhausted;
+    }
+    
+    public synchronized long getTimedOut()
+    {
+        return timedOut;
+    }
+    
+    public synchronized long getCancelled()
+    {
+        return cancelled;
+    }
+    
+    public synchronized long getNodes()
+    {
+        return totals.nodes;
+    }
+    
+    public synchronized long getBacktracks()
+    {
+        return totals.backtracks;
+    }
+    
+    public synchronized long getPropagations()
+    {
+        return totals.propagations;
+    }
+    
+    public synchronized long getSolutions()
+    {
+        return totals.solutions;
+    }
+    
+    public synchronized long getCacheHits()
+    {
+        return totals.cacheHits;
+    }
+    
+    public synchronized int getMaxDepth()
+    {
+        return totals.maxDepth;
+    }
+    
+    public synchronized long getPropagationNanos()
+    {
+        return totals.propagationNanos;
+    }
+    
+    public synchronized long getValidityNanos()
+    {
+        return totals.validityNanos;
+    }
+    
+    public synchronized long getElapsedNanos()
+    {
+        return totals.elapsedNanos;
+    }
+    
+    public synchronized void reset()
+    {
+        solves = 0;
+        exhausted = 0;
+        timedOut = 0;
+        cancelled = 0;
+        
+        totals.nodes = 0;
+        totals.backtracks = 0;
+        totals.propagations = 0;
+        totals.solutions = 0;
+        totals.cacheHits = 0;
+        totals.maxDepth = 0;
+        totals.propagationNanos = 0;
+        totals.validityNanos = 0;
+        totals.elapsedNanos = 0;
+    }
+}
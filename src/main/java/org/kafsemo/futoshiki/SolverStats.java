@@ -0,0 +1,132 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+/**
+ * Counters for the work done by a search. Each search keeps its own, as
+ * plain fields on its own thread, so counting costs next to nothing; they
+ * can be added together afterwards, as a {@link SolverMonitor} does.
+ * Times for propagation and validity checks are only kept if asked for.
+ * 
+ * @author Joseph Walton
+ */
+public class SolverStats
+{
+    long nodes, backtracks, propagations, solutions, cacheHits;
+    int maxDepth;
+    long propagationNanos, validityNanos, elapsedNanos;
+    
+    /**
+     * @return how many attempts were made, each a value tried for a cell
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+    
+    /**
+     * @return how many attempts led straight to a broken rule or a cell
+     * with no possibilities
+     */
+    public long getBacktracks()
+    {
+        return backtracks;
+    }
+    
+    /**
+     * @return how many times the consequences of a value were propagated
+     */
+    public long getPropagations()
+    {
+        return propagations;
+    }
+    
+    public long getSolutions()
+    {
+        return solutions;
+    }
+    
+    /**
+     * @return how many counts were found already known, rather than
+     * counted again
+     */
+    public long getCacheHits()
+    {
+        return cacheHits;
+    }
+    
+    /**
+     * @return the most cells filled in by the search at once
+     */
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+    
+    /**
+     * @return the time spent placing values and propagating, or zero if
+     * not timed
+     */
+    public long getPropagationNanos()
+    {
+        return propagationNanos;
+    }
+    
+    /**
+     * @return the time spent checking rules against the puzzle, or zero
+     * if not timed
+     */
+    public long getValidityNanos()
+    {
+        return validityNanos;
+    }
+    
+    /**
+     * @return the time taken by the whole solve
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Add another set of counters to this one, keeping the greater depth.
+     */
+    void add(SolverStats s)
+    {
+        nodes += s.nodes;
+        backtracks += s.backtracks;
+        propagations += s.propagations;
+        solutions += s.solutions;
+        cacheHits += s.cacheHits;
+        maxDepth = Math.max(maxDepth, s.maxDepth);
+        propagationNanos += s.propagationNanos;
+        validityNanos += s.validityNanos;
+        elapsedNanos += s.elapsedNanos;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return nodes + " nodes, " + backtracks + " backtracks, "
+            + propagations + " propagations, " + solutions + " solutions, "
+            + "depth " + maxDepth + ", " + (elapsedNanos / 1000) + "us";
+    }
+}
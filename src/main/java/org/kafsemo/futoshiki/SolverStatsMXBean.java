@@ -0,0 +1,60 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+/**
+ * Totals over every search reported to a {@link SolverMonitor}, for
+ * management tools.
+ * 
+ * @author Joseph Walton
+ */
+public interface SolverStatsMXBean
+{
+    long getSolves();
+    
+    long getExhausted();
+    
+    long getTimedOut();
+    
+    long getCancelled();
+    
+    long getNodes();
+    
+    long getBacktracks();
+    
+    long getPropagations();
+    
+    long getSolutions();
+    
+    long getCacheHits();
+    
+    int getMaxDepth();
+    
+    long getPropagationNanos();
+    
+    long getValidityNanos();
+    
+    long getElapsedNanos();
+    
+    /**
+     * Set every total back to zero.
+     */
+    void reset();
+}
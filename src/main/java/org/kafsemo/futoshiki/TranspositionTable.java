@@ -0,0 +1,84 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import java.util.Arrays;
+
+/**
+ * A memo of solution counts for sets of possibilities, keyed by the
+ * Zobrist keys from {@link Possibilities}. The same possibilities are
+ * often reached by placing the same values in a different order, and
+ * have the same number of solutions whichever way they were reached.
+ * <p>
+ * The table never grows. Each key has a single slot, chosen by the first
+ * key and checked against both, and a new entry replaces whatever was
+ * there; the most recent entries are kept.
+ * 
+ * @author Joseph Walton
+ */
+class TranspositionTable
+{
+    private final long[] keysA, keysB, counts;
+    private final int mask;
+    
+    /**
+     * @param capacity the most entries to keep, rounded down to a power
+     * of two
+     */
+    TranspositionTable(int capacity)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: "
+                    + capacity);
+        }
+        
+        int size = Integer.highestOneBit(capacity);
+        
+        keysA = new long[size];
+        keysB = new long[size];
+        counts = new long[size];
+        mask = size - 1;
+        
+        Arrays.fill(counts, -1);
+    }
+    
+    /**
+     * @return the count stored for these keys, or -1 if none is
+     */
+    long get(long keyA, long keyB)
+    {
+        int i = (int) keyA & mask;
+        
+        if (keysA[i] == keyA && keysB[i] == keyB) {
+            return counts[i];
+        } else {
+            return -1;
+        }
+    }
+    
+    void put(long keyA, long keyB, long count)
+    {
+        int i = (int) keyA & mask;
+        
+        keysA[i] = keyA;
+        keysB[i] = keyB;
+        counts[i] = count;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+/**
+ * Whether a puzzle has no solution, exactly one or more than one, with
+ * up to two of its solutions as witnesses. A search stopped by a limit
+ * before it could tell leaves the answer unknown.
+ * 
+ * @author Joseph Walton
+ */
+public class Uniqueness
+{
+    private final Status status;
+    private final Futoshiki solution, otherSolution;
+    private final Outcome outcome;
+    
+    Uniqueness(Futoshiki solution, Futoshiki otherSolution)
+    {
+        this(solution, otherSolution, null);
+    }
+    
+    /**
+     * @param outcome how the search ended, or <code>null</code> if the
+     * solutions weren't found by a limited search
+     */
+    Uniqueness(Futoshiki solution, Futoshiki otherSolution, Outcome outcome)
+    {
+        if (otherSolution == null && outcome != null
+                && outcome.getStatus() != Outcome.Status.SOLVED)
+        {
+            this.status = Status.UNKNOWN;
+        } else if (solution == null) {
+            this.status = Status.NONE;
+        } else if (otherSolution == null) {
+            this.status = Status.UNIQUE;
+        } else {
+            this.status = Status.MULTIPLE;
+        }
+        
+        this.solution = solution;
+        this.otherSolution = otherSolution;
+        this.outcome = outcome;
+    }
+    
+    public Status getStatus()
+    {
+        return status;
+    }
+    
+    /**
+     * @return the first solution found, or <code>null</code> if there are
+     * none
+     */
+    public Futoshiki getSolution()
+    {
+        return solution;
+    }
+    
+    /**
+     * @return a second, different solution, or <code>null</code> unless
+     * there are multiple solutions
+     */
+    public Futoshiki getOtherSolution()
+    {
+        return otherSolution;
+    }
+    
+    /**
+     * @return how the search ended, and how much work it did, or
+     * <code>null</code> if not known
+     */
+    public Outcome getOutcome()
+    {
+        return outcome;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return status.toString();
+    }
+    
+    public enum Status
+    {
+        NONE,
+        UNIQUE,
+        MULTIPLE,
+        
+        /** A limit stopped the search before it found out */
+        UNKNOWN;
+    }
+}
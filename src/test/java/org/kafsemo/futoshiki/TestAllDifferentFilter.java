@@ -0,0 +1,127 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link AllDifferentFilter} implementations, reasoning
+ * about a single row.
+ * 
+ * @author Joseph Walton
+ */
+public class TestAllDifferentFilter
+{
+    private static final int[] FIRST_ROW = {0, 1, 2, 3};
+    
+    /**
+     * A four-by-four grid with the first row's cells limited to the
+     * given values.
+     */
+    private static Possibilities firstRow(int[]... values)
+    {
+        Possibilities p = new Possibilities(4);
+        
+        for (int k = 0; k < values.length; k++) {
+            int allowed = 0;
+            for (int v : values[k]) {
+                allowed |= Possibilities.bit(v);
+            }
+            p.restrict(k, allowed);
+        }
+        
+        return p;
+    }
+    
+    private static int[] values(int... v)
+    {
+        return v;
+    }
+    
+    @Test
+    public void hallIntervalIsRemovedFromOtherCells()
+    {
+        Possibilities p = firstRow(values(1, 2), values(1, 2));
+        
+        assertTrue(new HallIntervalFilter(4).filter(p, FIRST_ROW));
+        
+        assertEquals(2, p.possibleCount(3, 1));
+        assertEquals(3, p.minPossible(3, 1));
+        assertEquals(3, p.minPossible(4, 1));
+        assertEquals(2, p.possibleCount(1, 1));
+    }
+    
+    @Test
+    public void overfullIntervalFailsForBounds()
+    {
+        Possibilities p = firstRow(values(2, 3), values(2, 3), values(2, 3));
+        
+        assertFalse(new HallIntervalFilter(4).filter(p, FIRST_ROW));
+    }
+    
+    @Test
+    public void overfullSetFailsForMatching()
+    {
+        Possibilities p = firstRow(values(1, 4), values(1, 4), values(1, 4));
+        
+        assertFalse(new MatchingFilter(4).filter(p, FIRST_ROW));
+    }
+    
+    @Test
+    public void nakedPairWithGapIsFoundByMatching()
+    {
+        Possibilities p = firstRow(values(1, 3), values(1, 3));
+        
+        assertTrue(new MatchingFilter(4).filter(p, FIRST_ROW));
+        
+        assertFalse(p.isPossible(3, 1, 1));
+        assertFalse(p.isPossible(3, 1, 3));
+        assertTrue(p.isPossible(3, 1, 2));
+        assertTrue(p.isPossible(4, 1, 4));
+        assertEquals(2, p.possibleCount(1, 1));
+    }
+    
+    @Test
+    public void hiddenSingleIsFoundByMatching()
+    {
+        Possibilities p = firstRow(values(1, 2, 3), values(1, 2, 3),
+                values(1, 2, 3));
+        
+        assertTrue(new MatchingFilter(4).filter(p, FIRST_ROW));
+        
+        assertEquals(1, p.possibleCount(4, 1));
+        assertTrue(p.isPossible(4, 1, 4));
+        assertEquals(3, p.possibleCount(1, 1));
+    }
+    
+    @Test
+    public void unconstrainedRowIsUnchanged()
+    {
+        Possibilities p = new Possibilities(4);
+        
+        assertTrue(new HallIntervalFilter(4).filter(p, FIRST_ROW));
+        assertTrue(new MatchingFilter(4).filter(p, FIRST_ROW));
+        
+        assertEquals(new Possibilities(4).size(), p.size());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kafsemo.futoshiki.BatchSolver.Result;
+import org.kafsemo.futoshiki.BatchSolver.ResultTarget;
+
+public class TestBatchSolver
+{
+    private ExecutorService executor;
+    
+    @Before
+    public void createExecutor()
+    {
+        executor = Executors.newFixedThreadPool(3);
+    }
+    
+    @After
+    public void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+    
+    static class ResultGatherer implements ResultTarget
+    {
+        List<Result> results = new ArrayList<Result>();
+        
+        public void result(Result r)
+        {
+            results.add(r);
+        }
+    }
+    
+    private static String corpus(int n)
+    {
+        StringBuilder sb = new StringBuilder();
+        
+        for (int i = 0; i < n; i++) {
+            Futoshiki f = new Futoshiki(4);
+            
+            switch (i % 3) {
+                case 0:
+                    /* Unique, as a shifted square with one cell left */
+                    for (int row = 1; row <= 4; row++) {
+                        for (int column = 1; column <= 4; column++) {
+                            if (row + column > 2) {
+                                f.set(column, row, 1 + (row + column) % 4);
+                            }
+                        }
+                    }
+                    break;
+                    
+                case 1:
+                    /* Many solutions */
+                    f.set(1, 1, 1 + i % 4);
+                    break;
+                    
+                default:
+                    /* None */
+                    f.set(1, 1, 1);
+                    f.addGtRule(1, 1, 2, 1);
+                    break;
+            }
+            
+            sb.append(FutoshikiPrinter.toString(f));
+            sb.append('\n');
+        }
+        
+        return sb.toString();
+    }
+    
+    @Test
+    public void resultsArriveInInputOrder() throws Exception
+    {
+        ResultGatherer rg = new ResultGatherer();
+        
+        long count = new BatchSolver(executor, 3).solve(
+                new PuzzleReader(new StringReader(corpus(100))), rg);
+        
+        assertEquals(100, count);
+        assertEquals(100, rg.results.size());
+        
+        Uniqueness.Status[] expected = {
+                Uniqueness.Status.UNIQUE,
+                Uniqueness.Status.MULTIPLE,
+                Uniqueness.Status.NONE
+        };
+        
+        for (int i = 0; i < 100; i++) {
+            Result r = rg.results.get(i);
+            assertEquals(i + 1, r.getIndex());
+            assertEquals(expected[i % 3], r.getStatus());
+            assertNull(r.getError());
+            assertEquals(-1, r.getCount());
+            
+            if (r.getStatus() == Uniqueness.Status.NONE) {
+                assertNull(r.getSolution());
+            } else {
+                assertTrue(r.getSolution().isFull());
+            }
+        }
+    }
+    
+    @Test
+    public void solutionsCanBeCounted() throws Exception
+    {
+        ResultGatherer rg = new ResultGatherer();
+        
+        BatchSolver bs = new BatchSolver(executor, 3);
+        bs.setCounting(true);
+        bs.solve(new PuzzleReader(new StringReader(corpus(3))), rg);
+        
+        assertEquals(1, rg.results.get(0).getCount());
+        assertEquals(576 / 4, rg.results.get(1).getCount());
+        assertEquals(0, rg.results.get(2).getCount());
+        assertNull(rg.results.get(0).getSolution());
+    }
+    
+    @Test
+    public void unreadablePuzzleIsReportedInPlace() throws Exception
+    {
+        ResultGatherer rg = new ResultGatherer();
+        
+        new BatchSolver(executor, 1).solve(new PuzzleReader(
+                new StringReader("1\n\n" + TestPuzzleReader.TOO_WIDE
+                        + "\n\n1\n")), rg);
+        
+        assertEquals(3, rg.results.size());
+        assertEquals(Uniqueness.Status.UNIQUE, rg.results.get(0).getStatus());
+        assertNotNull(rg.results.get(1).getError());
+        assertNull(rg.results.get(1).getStatus());
+        assertEquals(Uniqueness.Status.UNIQUE, rg.results.get(2).getStatus());
+    }
+    
+    @Test
+    public void writerGivesSummaryThenSolution() throws IOException
+    {
+        Futoshiki f = new Futoshiki(1);
+        f.set(1, 1, 1);
+        
+        StringWriter sw = new StringWriter();
+        new BatchSolver.ResultWriter(sw).result(
+                new Result(7, f, new Solver().check(f), 2500));
+        
+        assertEquals("7\tUNIQUE\t-\t2\n1\n\n", sw.toString());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.kafsemo.futoshiki.Solver.SolutionTarget;
+import org.kafsemo.futoshiki.TestSolver.PossibilityCountGatherer;
+import org.kafsemo.futoshiki.TestSolver.SolutionGatherer;
+import org.kafsemo.futoshiki.sample.NineSample;
+import org.mockito.Mockito;
+
+public class TestDancingLinksSolver
+{
+    @Test
+    public void countFindsEveryLatinSquare()
+    {
+        long[] expected = {1, 2, 12, 576, 161280};
+        
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i],
+                    new DancingLinksSolver().count(new Futoshiki(i + 1)));
+        }
+    }
+    
+    @Test
+    public void solverFindsEveryLatinSquare()
+    {
+        SolutionGatherer sg = new SolutionGatherer();
+        
+        new DancingLinksSolver(sg).solve(new Futoshiki(4));
+        
+        assertEquals(576, sg.solutions.size());
+        assertEquals(576, new HashSet<Futoshiki>(sg.solutions).size());
+        for (Futoshiki s : sg.solutions) {
+            assertTrue(s.isFull());
+            assertTrue(s.isValid());
+        }
+    }
+    
+    @Test
+    public void rulesAndGivenValuesAreRespected()
+    {
+        Futoshiki f = new Futoshiki(5);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 2, 2, 3);
+        f.addGtRule(4, 4, 3, 4);
+        f.addGtRule(5, 2, 5, 3);
+        f.set(3, 3, 2);
+        f.set(1, 5, 4);
+        
+        SolutionGatherer expected = new SolutionGatherer();
+        new Solver(expected).solve(f);
+        
+        SolutionGatherer sg = new SolutionGatherer();
+        new DancingLinksSolver(sg).solve(f);
+        
+        assertEquals(expected.solutions.size(), sg.solutions.size());
+        assertEquals(new HashSet<Futoshiki>(expected.solutions),
+                new HashSet<Futoshiki>(sg.solutions));
+        assertEquals(expected.solutions.size(),
+                new DancingLinksSolver().count(f));
+    }
+    
+    @Test
+    public void samplePuzzleHasOneSolution() throws IOException
+    {
+        Futoshiki f = NineSample.fromStream(
+                NineSample.class.getResourceAsStream("sample-9x9.txt"));
+        
+        Futoshiki original = f.clone();
+        
+        SolutionGatherer sg = new SolutionGatherer();
+        new DancingLinksSolver(sg).solve(f);
+        
+        assertEquals(1, sg.solutions.size());
+        assertEquals(1, new DancingLinksSolver().count(f));
+        assertEquals(original, f);
+    }
+    
+    @Test
+    public void impossiblePuzzleIsDetected()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.set(1, 1, 1);
+        f.addGtRule(1, 1, 2, 1);
+        
+        PossibilityCountGatherer pcg = new PossibilityCountGatherer();
+        new DancingLinksSolver(pcg).solve(f);
+        
+        assertEquals(0, new DancingLinksSolver().count(f));
+        assertEquals(BigInteger.ZERO, pcg.counts.get(pcg.counts.size() - 1));
+    }
+    
+    @Test
+    public void searchStopsWhenTargetWantsNoMoreSolutions()
+    {
+        SolutionTarget mockTarget = Mockito.mock(SolutionTarget.class);
+        Mockito.when(mockTarget.remainingPossibilities(Mockito.<BigInteger>any())).thenReturn(true);
+        Mockito.when(mockTarget.solution(Mockito.<Futoshiki>any())).thenReturn(false);
+        
+        new DancingLinksSolver(mockTarget).solve(new Futoshiki(9));
+        
+        Mockito.verify(mockTarget).solution(Mockito.<Futoshiki>any());
+        Mockito.verify(mockTarget, Mockito.never()).remainingPossibilities(BigInteger.ZERO);
+    }
+}
@@ -123,6 +123,77 @@ public class TestFutoshiki
         assertFalse(f.isValid());
     }
     
+    @Test
+    public void validityIsRestoredWhenDuplicatesAreRemoved()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.set(1, 1, 1);
+        f.set(2, 1, 1);
+        f.set(3, 1, 1);
+        assertFalse(f.isValid());
+        
+        f.clear(2, 1);
+        assertFalse("One duplicate remains", f.isValid());
+        
+        f.set(3, 1, 2);
+        assertTrue(f.isValid());
+        
+        f.set(1, 3, 2);
+        f.set(1, 2, 2);
+        assertFalse(f.isValid());
+        
+        f.set(1, 2, 3);
+        assertTrue(f.isValid());
+    }
+    
+    @Test
+    public void ruleViolationsFollowChangesToCellsAndRules()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 1, 3, 1);
+        assertTrue(f.isValid());
+        
+        f.set(2, 1, 1);
+        f.set(3, 1, 2);
+        assertFalse(f.isValid());
+        
+        f.set(2, 1, 3);
+        assertTrue(f.isValid());
+        
+        f.set(1, 1, 1);
+        assertFalse(f.isValid());
+        
+        f.removeRule(new GtRule(1, 1, 2, 1));
+        assertTrue(f.isValid());
+        
+        f.addGtRule(2, 1, 1, 1);
+        assertTrue(f.isValid());
+        
+        f.clear(2, 1);
+        f.set(1, 1, 3);
+        assertTrue(f.isValid());
+    }
+    
+    @Test
+    public void clonesTrackValidityIndependently()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.addGtRule(1, 1, 2, 1);
+        f.set(1, 1, 2);
+        assertTrue(f.isValid());
+        
+        Futoshiki f2 = f.clone();
+        f2.set(2, 1, 2);
+        assertFalse(f2.isValid());
+        assertTrue(f.isValid());
+        
+        f.set(1, 2, 2);
+        assertFalse(f.isValid());
+        f2.clear(2, 1);
+        assertTrue(f2.isValid());
+    }
+    
     @Test
     public void testNoRuleViolationWithoutNumbers()
     {
@@ -332,7 +403,18 @@ public class TestFutoshiki
     @Test(expected = IllegalArgumentException.class)
     public void testFutoshikiSizeMustNotExceedNumberOfDigits()
     {
-        new Futoshiki(10);
+        new Futoshiki(Grid.MAX_LENGTH + 1);
+    }
+    
+    @Test
+    public void largestFutoshikiTracksValidity()
+    {
+        Futoshiki f = new Futoshiki(Grid.MAX_LENGTH);
+        f.set(64, 64, 64);
+        f.set(1, 64, 64);
+        assertFalse(f.isValid());
+        f.set(1, 64, 63);
+        assertTrue(f.isValid());
     }
     
     @Test
@@ -491,4 +573,19 @@ public class TestFutoshiki
         f.isValid();
         assertEquals(1, gather(f.getRules()).size());
     }
+    
+    @Test
+    public void rulesAreCounted()
+    {
+        Futoshiki f = new Futoshiki(3);
+        assertEquals(0, f.getRuleCount());
+        
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(1, 1, 1, 2);
+        assertEquals(2, f.getRuleCount());
+        assertEquals(2, f.clone().getRuleCount());
+        
+        f.removeRule(new GtRule(1, 1, 2, 1));
+        assertEquals(1, f.getRuleCount());
+    }
 }
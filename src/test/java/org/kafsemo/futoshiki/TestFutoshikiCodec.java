@@ -0,0 +1,148 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.kafsemo.futoshiki.sample.NineSample;
+
+public class TestFutoshikiCodec
+{
+    private static Futoshiki sample() throws IOException
+    {
+        return NineSample.fromStream(
+                NineSample.class.getResourceAsStream("sample-9x9.txt"));
+    }
+    
+    @Test
+    public void samplePuzzleSurvivesRoundTrip() throws IOException
+    {
+        Futoshiki f = sample();
+        
+        byte[] record = FutoshikiCodec.encode(f);
+        
+        assertEquals(78, record.length);
+        assertEquals(f, FutoshikiCodec.decode(record));
+    }
+    
+    @Test
+    public void rulesInEveryDirectionSurviveRoundTrip()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(3, 1, 2, 1);
+        f.addGtRule(1, 2, 1, 3);
+        f.addGtRule(3, 3, 3, 2);
+        f.set(2, 2, 3);
+        
+        assertEquals(f, FutoshikiCodec.decode(FutoshikiCodec.encode(f)));
+    }
+    
+    @Test
+    public void everySizeSurvivesRoundTrip()
+    {
+        for (int length = 1; length <= Grid.MAX_LENGTH; length++) {
+            Futoshiki f = new Futoshiki(length);
+            f.set(length, length, length);
+            f.set(1, 1, 1);
+            if (length > 1) {
+                f.addGtRule(length, length, length - 1, length);
+            }
+            
+            byte[] record = FutoshikiCodec.encode(f);
+            assertEquals(FutoshikiCodec.encodedLength(length), record.length);
+            assertEquals(f, FutoshikiCodec.decode(record));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rulesBetweenDistantCellsAreRejected()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.addGtRule(1, 1, 3, 1);
+        
+        FutoshikiCodec.encode(f);
+    }
+    
+    @Test
+    public void recordsFollowOnInBuffer() throws IOException
+    {
+        Futoshiki a = sample(), b = new Futoshiki(2);
+        b.set(1, 2, 2);
+        
+        ByteBuffer bb = ByteBuffer.allocate(200);
+        FutoshikiCodec.encode(a, bb);
+        FutoshikiCodec.encode(b, bb);
+        bb.flip();
+        
+        assertEquals(a, FutoshikiCodec.decode(bb));
+        assertEquals(b, FutoshikiCodec.decode(bb));
+        assertEquals(0, bb.remaining());
+    }
+    
+    @Test
+    public void streamHoldsPuzzlesInOrder() throws IOException
+    {
+        Futoshiki a = sample(), b = new Futoshiki(4), c = new Futoshiki(1);
+        b.addGtRule(2, 3, 2, 4);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryPuzzleWriter w = new BinaryPuzzleWriter(baos);
+        for (Futoshiki f : Arrays.asList(a, b, c, a)) {
+            w.write(f);
+        }
+        w.close();
+        
+        BinaryPuzzleReader r = new BinaryPuzzleReader(
+                new ByteArrayInputStream(baos.toByteArray()));
+        
+        assertEquals(a, r.read());
+        assertEquals(b, r.read());
+        assertEquals(c, r.read());
+        assertEquals(a, r.read());
+        assertNull(r.read());
+    }
+    
+    @Test
+    public void truncatedStreamIsAnError() throws IOException
+    {
+        byte[] record = FutoshikiCodec.encode(new Futoshiki(5));
+        
+        BinaryPuzzleReader r = new BinaryPuzzleReader(new ByteArrayInputStream(
+                Arrays.copyOf(record, record.length - 1)));
+        
+        try {
+            r.read();
+            fail();
+        } catch (EOFException eofe) {
+            // Expected
+        }
+    }
+}
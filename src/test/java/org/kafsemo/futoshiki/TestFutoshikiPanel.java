@@ -19,11 +19,18 @@
 package org.kafsemo.futoshiki;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
 
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -170,4 +177,139 @@ public class TestFutoshikiPanel
         assertEquals(Integer.valueOf(2), pceCaptor.getAllValues().get(1).getOldValue());
         assertEquals(Integer.valueOf(1), pceCaptor.getAllValues().get(1).getNewValue());
     }
+    
+    /**
+     * Count down once a solve is over.
+     */
+    private static CountDownLatch solveDone(FutoshikiPanel fp)
+    {
+        final CountDownLatch done = new CountDownLatch(1);
+        
+        fp.addPropertyChangeListener("futoshiki.solving",
+                new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt)
+            {
+                if (Boolean.FALSE.equals(evt.getNewValue())) {
+                    done.countDown();
+                }
+            }
+        });
+        
+        return done;
+    }
+    
+    @Test
+    public void solvingHappensInTheBackground() throws Exception
+    {
+        final FutoshikiPanel fp = new FutoshikiPanel();
+        final Futoshiki puzzle = new Generator(0).generate(5);
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run()
+            {
+                fp.setFutoshiki(puzzle);
+            }
+        });
+        
+        CountDownLatch done = solveDone(fp);
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run()
+            {
+                fp.solve();
+                assertTrue(fp.isSolving());
+            }
+        });
+        
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run()
+            {
+                assertFalse(fp.isSolving());
+                assertTrue(fp.getFutoshiki().isFull());
+                assertTrue(fp.getFutoshiki().isValid());
+            }
+        });
+    }
+    
+    /**
+     * Holds on to the solve until told to run it, on a thread of its own.
+     */
+    private static class LaterExecutor implements Executor
+    {
+        private Runnable command;
+        
+        public synchronized void execute(Runnable command)
+        {
+            this.command = command;
+        }
+        
+        synchronized void runNow()
+        {
+            new Thread(command).start();
+        }
+    }
+    
+    @Test
+    public void cancellingLeavesThePuzzleAlone() throws Exception
+    {
+        final FutoshikiPanel fp = new FutoshikiPanel();
+        LaterExecutor later = new LaterExecutor();
+        fp.setSolveExecutor(later);
+        
+        CountDownLatch done = solveDone(fp);
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run()
+            {
+                fp.solve();
+                fp.cancelSolve();
+                
+                /* Still solving until the search itself has stopped */
+                assertTrue(fp.isSolving());
+            }
+        });
+        
+        later.runNow();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run()
+            {
+                assertFalse(fp.isSolving());
+                assertEquals(new Futoshiki(), fp.getFutoshiki());
+            }
+        });
+    }
+    
+    @Test
+    public void changingThePuzzleCancelsTheSolve() throws Exception
+    {
+        final FutoshikiPanel fp = new FutoshikiPanel();
+        LaterExecutor later = new LaterExecutor();
+        fp.setSolveExecutor(later);
+        
+        CountDownLatch done = solveDone(fp);
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run()
+            {
+                fp.solve();
+                fp.setFutoshiki(new Futoshiki(3));
+                assertTrue(fp.isSolving());
+            }
+        });
+        
+        later.runNow();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run()
+            {
+                assertFalse(fp.isSolving());
+                assertEquals(new Futoshiki(3), fp.getFutoshiki());
+            }
+        });
+    }
 }
@@ -18,6 +18,11 @@
 
 package org.kafsemo.futoshiki;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
 import junit.framework.TestCase;
 
 import org.kafsemo.futoshiki.Futoshiki;
@@ -510,4 +515,106 @@ public class TestFutoshikiPrinter extends TestCase
         
         assertEquals(f1, FutoshikiPrinter.parse(s1.toUpperCase()));
     }
+    
+    public void testValuesBeyondNineUseLetters()
+    {
+        Futoshiki f = new Futoshiki(36);
+        f.set(1, 1, 10);
+        f.set(2, 1, 35);
+        f.set(3, 1, 36);
+        f.addGtRule(2, 1, 3, 1);
+        
+        String s = FutoshikiPrinter.toString(f);
+        
+        assertTrue(s.startsWith("A Z>a "));
+        assertEquals(f, FutoshikiPrinter.parse(s));
+    }
+    
+    public void testEveryValueHasItsOwnDigit()
+    {
+        for (int v = 1; v <= Grid.MAX_LENGTH; v++) {
+            assertEquals(v, FutoshikiPrinter.value(FutoshikiPrinter.digit(v)));
+        }
+        
+        assertEquals(0, FutoshikiPrinter.value(' '));
+        assertEquals(0, FutoshikiPrinter.value('0'));
+    }
+    
+    public void testLargestPuzzleSizeIsFoundFromItsValues()
+    {
+        Futoshiki f = FutoshikiPrinter.parse("$");
+        
+        assertEquals(Grid.MAX_LENGTH, f.getLength());
+        assertEquals(Grid.MAX_LENGTH, f.get(1, 1));
+    }
+    
+    private static Futoshiki withRules()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.set(1, 1, 3);
+        f.set(3, 3, 2);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(3, 1, 2, 1);
+        f.addGtRule(1, 1, 1, 2);
+        f.addGtRule(3, 3, 3, 2);
+        return f;
+    }
+    
+    public void testPrintingToAppendableMatchesString() throws IOException
+    {
+        Futoshiki f = withRules();
+        
+        StringBuilder sb = new StringBuilder("x");
+        FutoshikiPrinter.print(f, sb);
+        FutoshikiPrinter.print(f, sb);
+        
+        String s = FutoshikiPrinter.toString(f);
+        assertEquals("3> < \nv    \n     \n    ^\n    2\n", s);
+        assertEquals("x" + s + s, sb.toString());
+    }
+    
+    public void testPrintingToBuffers() throws IOException
+    {
+        Futoshiki f = withRules();
+        String s = FutoshikiPrinter.toString(f);
+        
+        assertEquals(s.length(), FutoshikiPrinter.printedLength(3));
+        
+        CharBuffer cb = CharBuffer.allocate(s.length() + 1);
+        FutoshikiPrinter.print(f, cb);
+        assertEquals(1, cb.remaining());
+        cb.flip();
+        assertEquals(s, cb.toString());
+        
+        ByteBuffer bb = ByteBuffer.allocate(s.length());
+        FutoshikiPrinter.print(f, bb);
+        assertEquals(0, bb.remaining());
+        assertEquals(s, new String(bb.array(), "us-ascii"));
+    }
+    
+    public void testPrintingToFullBufferWritesNothing()
+    {
+        ByteBuffer bb = ByteBuffer.allocate(
+                FutoshikiPrinter.printedLength(3) - 1);
+        
+        try {
+            FutoshikiPrinter.print(withRules(), bb);
+            fail();
+        } catch (BufferOverflowException boe) {
+            // Expected
+        }
+        
+        assertEquals(0, bb.position());
+    }
+    
+    public void testEmptyLinesAreRowsWhenParsing()
+    {
+        assertEquals(1, FutoshikiPrinter.parse("").getLength());
+        assertEquals(1, FutoshikiPrinter.parse("1\n").getLength());
+        assertEquals(2, FutoshikiPrinter.parse("1\n\n").getLength());
+        
+        Futoshiki f = FutoshikiPrinter.parse("1\n\n\n\n  3");
+        assertEquals(3, f.getLength());
+        assertEquals(3, f.get(2, 3));
+    }
 }
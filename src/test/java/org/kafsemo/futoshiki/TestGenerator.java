@@ -0,0 +1,126 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestGenerator
+{
+    private static boolean sameValues(Futoshiki a, Futoshiki b)
+    {
+        for (int row = 1; row <= a.getLength(); row++) {
+            for (int column = 1; column <= a.getLength(); column++) {
+                if (a.get(column, row) != b.get(column, row)) {
+                    return false;
+                }
+            }
+        }
+        
+        return true;
+    }
+    
+    @Test
+    public void latinSquaresAreComplete()
+    {
+        Generator g = new Generator(1);
+        
+        for (int length = 1; length <= 12; length++) {
+            Futoshiki f = g.latinSquare(length);
+            
+            assertEquals(length, f.getLength());
+            assertTrue(f.isFull());
+            assertTrue(f.isValid());
+        }
+    }
+    
+    @Test
+    public void latinSquaresDiffer()
+    {
+        Generator g = new Generator(1);
+        
+        assertFalse(g.latinSquare(6).equals(g.latinSquare(6)));
+    }
+    
+    @Test
+    public void generatedPuzzlesHaveUniqueSolutions()
+    {
+        Generator g = new Generator(2);
+        
+        for (int length = 1; length <= 7; length++) {
+            Futoshiki solution = g.latinSquare(length);
+            Futoshiki puzzle = g.generate(solution);
+            
+            Uniqueness u = new Solver().check(puzzle);
+            assertEquals(Uniqueness.Status.UNIQUE, u.getStatus());
+            assertTrue(sameValues(solution, u.getSolution()));
+        }
+    }
+    
+    @Test
+    public void cluesAreRemoved()
+    {
+        Futoshiki f = new Generator(3).generate(6);
+        
+        assertFalse(f.isFull());
+        assertTrue(f.isValid());
+    }
+    
+    @Test
+    public void puzzlesUseOnlyGivensWhenAsked()
+    {
+        Generator g = new Generator(4);
+        g.setRuleShare(0);
+        
+        Futoshiki f = g.generate(5);
+        
+        assertFalse(f.getRules().iterator().hasNext());
+        assertEquals(Uniqueness.Status.UNIQUE,
+                new Solver().check(f).getStatus());
+    }
+    
+    @Test
+    public void puzzlesMayUseOnlyRules()
+    {
+        Generator g = new Generator(5);
+        g.setRuleShare(1);
+        
+        Futoshiki f = g.generate(5);
+        
+        assertTrue(f.getRules().iterator().hasNext());
+        assertEquals(Uniqueness.Status.UNIQUE,
+                new Solver().check(f).getStatus());
+    }
+    
+    @Test
+    public void sameSeedGivesSamePuzzle()
+    {
+        assertEquals(new Generator(6).generate(7), new Generator(6).generate(7));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void incompleteSolutionIsRejected()
+    {
+        new Generator(7).generate(new Futoshiki(4));
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kafsemo.futoshiki.GeneratorService.Bucket;
+
+public class TestGeneratorService
+{
+    private ExecutorService executor;
+    
+    @Before
+    public void createExecutor()
+    {
+        executor = Executors.newFixedThreadPool(2);
+    }
+    
+    @After
+    public void shutDownExecutor() throws InterruptedException
+    {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    private static void awaitIdle(GeneratorService gs)
+        throws InterruptedException
+    {
+        for (int i = 0; i < 1000 && gs.getActiveWorkers() > 0; i++) {
+            Thread.sleep(10);
+        }
+        
+        assertEquals(0, gs.getActiveWorkers());
+    }
+    
+    @Test
+    public void takenPuzzlesHaveUniqueSolutions() throws InterruptedException
+    {
+        GeneratorService gs = new GeneratorService(executor, 2, 0);
+        gs.addBucket(4, 0, 3);
+        gs.addBucket(5, 0, 3);
+        gs.start();
+        
+        for (int i = 0; i < 10; i++) {
+            Futoshiki f = gs.take(4 + i % 2, 0);
+            
+            assertEquals(4 + i % 2, f.getLength());
+            assertEquals(Uniqueness.Status.UNIQUE,
+                    new Solver().check(f).getStatus());
+        }
+        
+        gs.stop();
+    }
+    
+    @Test
+    public void workersStopWhenBucketsAreFull() throws InterruptedException
+    {
+        GeneratorService gs = new GeneratorService(executor, 2, 0);
+        Bucket b = gs.addBucket(4, 0, 5);
+        gs.start();
+        
+        awaitIdle(gs);
+        
+        assertEquals(5, b.getBacklog());
+        assertEquals(5, gs.getBacklog());
+        assertTrue(gs.getGenerated() >= 5);
+        
+        assertNotNull(gs.poll(4, 0));
+        assertEquals(1, b.getTaken());
+        
+        /* Taking one sets the workers going again, to top up */
+        assertNotNull(gs.poll(4, 0, 10, TimeUnit.SECONDS));
+        awaitIdle(gs);
+        
+        assertEquals(5, b.getBacklog());
+        assertEquals(7, b.getGenerated());
+        assertTrue(gs.getThroughput() > 0);
+        assertTrue(gs.getMeanGenerationNanos() > 0);
+    }
+    
+    @Test
+    public void puzzlesGoToTheBucketForTheirGrade()
+        throws InterruptedException
+    {
+        GeneratorService.Grader byRules = new GeneratorService.Grader() {
+            public int grade(Futoshiki puzzle)
+            {
+                return puzzle.getRules().iterator().hasNext() ? 1 : 0;
+            }
+        };
+        
+        GeneratorService gs = new GeneratorService(executor, 2, 0, byRules);
+        gs.addBucket(4, 0, 2);
+        gs.addBucket(4, 1, 2);
+        gs.start();
+        
+        assertTrue(gs.take(4, 1).getRules().iterator().hasNext());
+        assertTrue(!gs.take(4, 0).getRules().iterator().hasNext());
+        
+        gs.stop();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownBucketIsRejected()
+    {
+        GeneratorService gs = new GeneratorService(executor, 1, 0);
+        gs.addBucket(4, 0, 2);
+        
+        gs.poll(5, 0);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void bucketsCannotBeAddedOnceStarted()
+    {
+        GeneratorService gs = new GeneratorService(executor, 1, 0);
+        gs.addBucket(4, 0, 2);
+        gs.start();
+        gs.stop();
+        
+        gs.addBucket(5, 0, 2);
+    }
+    
+    @Test(timeout = 30000)
+    public void workersStopWhenOnlyStarvedBucketsHaveRoom()
+        throws InterruptedException
+    {
+        GeneratorService gs = new GeneratorService(executor, 2, 0,
+                new GeneratorService.Grader() {
+                    public int grade(Futoshiki puzzle)
+                    {
+                        return 1;
+                    }
+                });
+        gs.setMissLimit(5);
+        Bucket never = gs.addBucket(3, 0, 2);
+        Bucket always = gs.addBucket(3, 1, 2);
+        
+        gs.start();
+        awaitIdle(gs);
+        
+        assertEquals(2, always.getBacklog());
+        assertEquals(0, never.getBacklog());
+        assertTrue(gs.isStarved(never));
+        assertFalse(gs.isStarved(always));
+        assertTrue(gs.getDiscarded() > 0);
+    }
+    
+    @Test(timeout = 30000)
+    public void graderFailuresAreCounted() throws InterruptedException
+    {
+        final RuntimeException failure = new IllegalStateException();
+        
+        GeneratorService gs = new GeneratorService(executor, 2, 0,
+                new GeneratorService.Grader() {
+                    public int grade(Futoshiki puzzle)
+                    {
+                        throw failure;
+                    }
+                });
+        gs.setMissLimit(5);
+        Bucket b = gs.addBucket(3, 0, 2);
+        
+        gs.start();
+        awaitIdle(gs);
+        
+        assertTrue(gs.getFailed() >= 5);
+        assertSame(failure, gs.getLastFailure());
+        assertTrue(gs.isStarved(b));
+        assertEquals(0, gs.getGenerated());
+    }
+    
+    @Test
+    public void shutDownExecutorStopsTheService()
+    {
+        executor.shutdown();
+        
+        GeneratorService gs = new GeneratorService(executor, 2, 0);
+        gs.addBucket(3, 0, 2);
+        
+        try {
+            gs.start();
+            fail("The executor is shut down");
+        } catch (RejectedExecutionException ree) {
+            assertSame(ree, gs.getLastFailure());
+        }
+        
+        assertEquals(0, gs.getActiveWorkers());
+        assertFalse(gs.isRunning());
+    }
+}
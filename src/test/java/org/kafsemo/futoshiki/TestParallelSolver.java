@@ -0,0 +1,173 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kafsemo.futoshiki.Solver.SolutionTarget;
+import org.kafsemo.futoshiki.TestSolver.SolutionGatherer;
+import org.mockito.Mockito;
+
+public class TestParallelSolver
+{
+    private ForkJoinPool pool;
+    
+    @Before
+    public void createPool()
+    {
+        pool = new ForkJoinPool(4);
+    }
+    
+    @After
+    public void shutdownPool()
+    {
+        pool.shutdownNow();
+    }
+    
+    static class SynchronizedGatherer extends SolutionGatherer
+    {
+        @Override
+        public synchronized boolean solution(Futoshiki f)
+        {
+            return super.solution(f);
+        }
+    }
+    
+    @Test
+    public void solverFindsEveryLatinSquare()
+    {
+        for (int depth = 0; depth <= 6; depth += 2) {
+            SolutionGatherer sg = new SynchronizedGatherer();
+            
+            ParallelSolver s = new ParallelSolver(sg, pool);
+            s.setSplitDepth(depth);
+            s.solve(new Futoshiki(4));
+            
+            assertEquals(576, sg.solutions.size());
+            assertEquals(576, new HashSet<Futoshiki>(sg.solutions).size());
+            for (Futoshiki f : sg.solutions) {
+                assertTrue(f.isFull());
+                assertTrue(f.isValid());
+            }
+        }
+    }
+    
+    @Test
+    public void parallelSolverFindsTheSameSolutionsAsSolver()
+    {
+        Futoshiki f = new Futoshiki(5);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 2, 2, 3);
+        f.addGtRule(4, 4, 3, 4);
+        f.addGtRule(5, 2, 5, 3);
+        f.set(3, 3, 2);
+        f.set(1, 5, 4);
+        
+        SolutionGatherer expected = new SolutionGatherer();
+        new Solver(expected).solve(f);
+        
+        for (Solver.AllDifferent ad : Solver.AllDifferent.values()) {
+            SolutionGatherer sg = new SynchronizedGatherer();
+            
+            ParallelSolver s = new ParallelSolver(sg, pool);
+            s.setAllDifferent(ad);
+            s.solve(f);
+            
+            assertEquals(expected.solutions.size(), sg.solutions.size());
+            assertEquals(new HashSet<Futoshiki>(expected.solutions),
+                    new HashSet<Futoshiki>(sg.solutions));
+        }
+    }
+    
+    @Test(timeout = 5000)
+    public void noMoreSolutionsAreDeliveredOnceTargetDeclines()
+    {
+        SolutionTarget mockTarget = Mockito.mock(SolutionTarget.class);
+        Mockito.when(mockTarget.remainingPossibilities(Mockito.<BigInteger>any())).thenReturn(true);
+        Mockito.when(mockTarget.solution(Mockito.<Futoshiki>any())).thenReturn(false);
+        
+        new ParallelSolver(mockTarget, pool).solve(new Futoshiki(9));
+        
+        Mockito.verify(mockTarget).solution(Mockito.<Futoshiki>any());
+        Mockito.verify(mockTarget, Mockito.never()).remainingPossibilities(BigInteger.ZERO);
+    }
+    
+    @Test
+    public void searchIsSkippedWhenTargetDeclinesAtStart()
+    {
+        SolutionTarget mockTarget = Mockito.mock(SolutionTarget.class);
+        Mockito.when(mockTarget.remainingPossibilities(Mockito.<BigInteger>any())).thenReturn(false);
+        
+        new ParallelSolver(mockTarget, pool).solve(new Futoshiki(4));
+        
+        Mockito.verify(mockTarget).remainingPossibilities(Mockito.<BigInteger>any());
+        Mockito.verifyNoMoreInteractions(mockTarget);
+    }
+    
+    @Test
+    public void impossiblePuzzleReportsNoSolutions()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.set(1, 1, 1);
+        f.addGtRule(1, 1, 2, 1);
+        
+        SolutionGatherer sg = new SynchronizedGatherer();
+        new ParallelSolver(sg, pool).solve(f);
+        
+        assertTrue(sg.solutions.isEmpty());
+    }
+    
+    @Test
+    public void statisticsOfEveryTaskAreAddedUp()
+    {
+        SolverMonitor m = new SolverMonitor();
+        
+        for (int depth = 0; depth <= 6; depth += 2) {
+            ParallelSolver s = new ParallelSolver(new SynchronizedGatherer(),
+                    pool);
+            s.setSplitDepth(depth);
+            s.setMonitor(m);
+            
+            Outcome o = s.solve(new Futoshiki(4));
+            
+            assertEquals(Outcome.Status.SOLVED, o.getStatus());
+            assertEquals(576, o.getSolutions());
+            assertTrue(o.getNodes() > 576);
+            assertEquals(16, o.getStats().getMaxDepth());
+        }
+        
+        assertEquals(4, m.getSolves());
+        assertEquals(4 * 576, m.getSolutions());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSplitDepthIsRejected()
+    {
+        new ParallelSolver(new SolutionGatherer(), pool).setSplitDepth(-1);
+    }
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.math.BigInteger;
+import java.util.Random;
 import java.util.TreeSet;
 
 import org.junit.Test;
@@ -94,6 +95,17 @@ public class TestPossibilities
         assertEquals(BigInteger.valueOf(19683), p.size());
     }
 
+    @Test
+    public void totalNumberOfPossibilitiesIsExactForLargePuzzles()
+    {
+        Possibilities p = new Possibilities(9);
+        assertEquals(BigInteger.valueOf(9).pow(81), p.size());
+        
+        p.use(1, 1, 1);
+        assertEquals(BigInteger.valueOf(8).pow(16).multiply(
+                BigInteger.valueOf(9).pow(64)), p.size());
+    }
+
     @Test
     public void totalPossibilitiesIsConstantForOneByOne()
     {
@@ -226,6 +238,28 @@ public class TestPossibilities
         }
     }
     
+    @Test
+    public void changesAreUndoneToMarkedPoint()
+    {
+        Possibilities p = new Possibilities(3);
+        p.startTrail();
+        
+        p.use(1, 1, 1);
+        int mark = p.mark();
+        
+        p.use(2, 2, 2);
+        p.use(3, 3, 3);
+        assertEquals(BigInteger.ONE, p.size());
+        
+        p.undo(mark);
+        assertEquals(BigInteger.valueOf(16 * 81), p.size());
+        assertFalse(p.isPossible(2, 1, 1));
+        assertTrue(p.isPossible(2, 2, 3));
+        
+        p.undo(0);
+        assertEquals(new Possibilities(3).size(), p.size());
+    }
+    
     public static String toString(Possibilities p)
     {
         StringBuilder sb = new StringBuilder();
@@ -249,6 +283,48 @@ public class TestPossibilities
         return sb.toString();
     }
     
+    @Test
+    public void keysDependOnlyOnPossibilities()
+    {
+        Possibilities p = new Possibilities(4), q = new Possibilities(4);
+        p.startHashing(new Random(0));
+        q.startHashing(new Random(0));
+        
+        assertEquals(p.keyA(), q.keyA());
+        
+        p.use(1, 1, 1);
+        p.use(2, 2, 2);
+        q.use(2, 2, 2);
+        q.use(1, 1, 1);
+        
+        assertEquals(p.keyA(), q.keyA());
+        assertEquals(p.keyB(), q.keyB());
+        
+        q.use(3, 3, 3);
+        assertFalse(p.keyA() == q.keyA());
+        assertFalse(p.keyB() == q.keyB());
+    }
+    
+    @Test
+    public void keysAreRestoredByUndo()
+    {
+        Possibilities p = new Possibilities(4);
+        p.startTrail();
+        p.startHashing(new Random(0));
+        
+        p.use(1, 1, 1);
+        long keyA = p.keyA(), keyB = p.keyB();
+        int mark = p.mark();
+        
+        p.use(2, 2, 2);
+        p.use(3, 4, 4);
+        assertFalse(keyA == p.keyA());
+        
+        p.undo(mark);
+        assertEquals(keyA, p.keyA());
+        assertEquals(keyB, p.keyB());
+    }
+    
     @Test
     public void ruleEliminationsSucceedEvenWhenPuzzleCannotBeSolved()
     {
@@ -258,4 +334,21 @@ public class TestPossibilities
         
         new Possibilities(2).use(f);
     }
+    
+    @Test
+    public void largestPuzzleHoldsEveryValue()
+    {
+        Possibilities p = new Possibilities(Grid.MAX_LENGTH);
+        
+        assertEquals(64, p.possibleCount(1, 1));
+        assertTrue(p.isPossible(1, 1, 64));
+        
+        p.use(1, 1, 64);
+        
+        assertEquals(1, p.possibleCount(1, 1));
+        assertEquals(64, p.minPossible(1, 1));
+        assertEquals(63, p.possibleCount(64, 1));
+        assertEquals(63, p.maxPossible(1, 64));
+        assertEquals(64, p.possibleCount(2, 2));
+    }
 }
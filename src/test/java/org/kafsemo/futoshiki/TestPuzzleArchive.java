@@ -0,0 +1,168 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kafsemo.futoshiki.sample.NineSample;
+
+public class TestPuzzleArchive
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static List<Futoshiki> puzzles() throws IOException
+    {
+        List<Futoshiki> puzzles = new ArrayList<Futoshiki>();
+        
+        puzzles.add(NineSample.fromStream(
+                NineSample.class.getResourceAsStream("sample-9x9.txt")));
+        
+        Random r = new Random(0);
+        for (int i = 0; i < 50; i++) {
+            int length = 1 + r.nextInt(12);
+            Futoshiki f = new Futoshiki(length);
+            f.set(1 + r.nextInt(length), 1 + r.nextInt(length),
+                    1 + r.nextInt(length));
+            if (length > 1) {
+                f.addGtRule(1, 1, 2, 1);
+            }
+            puzzles.add(f);
+        }
+        
+        puzzles.add(new Futoshiki(Grid.MAX_LENGTH));
+        
+        return puzzles;
+    }
+    
+    private File write(List<Futoshiki> puzzles) throws IOException
+    {
+        File f = folder.newFile("puzzles.bin");
+        
+        PuzzleArchiveWriter w = new PuzzleArchiveWriter(f);
+        for (int i = 0; i < puzzles.size(); i++) {
+            assertEquals(i, w.write(puzzles.get(i)));
+        }
+        w.close();
+        
+        return f;
+    }
+    
+    @Test
+    public void puzzlesAreReadBackByNumber() throws IOException
+    {
+        List<Futoshiki> puzzles = puzzles();
+        
+        PuzzleArchive archive = new PuzzleArchive(write(puzzles));
+        
+        assertEquals(puzzles.size(), archive.size());
+        for (int i = puzzles.size() - 1; i >= 0; i--) {
+            assertEquals(puzzles.get(i), archive.get(i));
+        }
+        
+        archive.close();
+    }
+    
+    @Test
+    public void recordsAcrossSegmentBoundariesAreRead() throws IOException
+    {
+        List<Futoshiki> puzzles = puzzles();
+        File f = write(puzzles);
+        
+        for (int segment : new int[]{1, 7, 64, 1000}) {
+            PuzzleArchive archive = new PuzzleArchive(f, segment);
+            
+            for (int i = 0; i < puzzles.size(); i++) {
+                assertEquals(puzzles.get(i), archive.get(i));
+            }
+            
+            archive.close();
+        }
+    }
+    
+    @Test
+    public void emptyArchiveHasNoPuzzles() throws IOException
+    {
+        PuzzleArchive archive = new PuzzleArchive(
+                write(new ArrayList<Futoshiki>()));
+        
+        assertEquals(0, archive.size());
+        
+        try {
+            archive.get(0);
+            fail();
+        } catch (IndexOutOfBoundsException ioobe) {
+            // Expected
+        }
+        
+        archive.close();
+    }
+    
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException
+    {
+        File f = folder.newFile("other.bin");
+        
+        FileOutputStream out = new FileOutputStream(f);
+        out.write(new byte[100]);
+        out.close();
+        
+        new PuzzleArchive(f);
+    }
+    
+    @Test
+    public void closingTwiceHasNoEffect() throws IOException
+    {
+        File f = folder.newFile("twice.bin");
+        
+        PuzzleArchiveWriter w = new PuzzleArchiveWriter(f);
+        w.write(new Futoshiki(4));
+        w.close();
+        
+        long length = f.length();
+        w.close();
+        assertEquals(length, f.length());
+        
+        PuzzleArchive archive = new PuzzleArchive(f);
+        assertEquals(1, archive.size());
+        archive.close();
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void writingAfterCloseIsRejected() throws IOException
+    {
+        PuzzleArchiveWriter w = new PuzzleArchiveWriter(
+                folder.newFile("closed.bin"));
+        w.close();
+        
+        w.write(new Futoshiki(4));
+    }
+}
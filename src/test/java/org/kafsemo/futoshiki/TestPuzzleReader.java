@@ -0,0 +1,183 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+import org.kafsemo.futoshiki.sample.NineSample;
+
+public class TestPuzzleReader
+{
+    /* A value in a column beyond the largest size */
+    static final String TOO_WIDE;
+    
+    static
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Grid.MAX_LENGTH; i++) {
+            sb.append("  ");
+        }
+        TOO_WIDE = sb.append('1').toString();
+    }
+    
+    @Test
+    public void puzzlesAreSeparatedByEmptyLines() throws IOException
+    {
+        Futoshiki a = new Futoshiki(3);
+        a.set(1, 1, 2);
+        a.addGtRule(2, 2, 2, 3);
+        
+        Futoshiki b = new Futoshiki(2);
+        b.set(2, 2, 1);
+        
+        String s = "\n" + FutoshikiPrinter.toString(a) + "\n\n"
+            + FutoshikiPrinter.toString(b) + "\n";
+        
+        PuzzleReader pr = new PuzzleReader(new StringReader(s));
+        
+        assertEquals(a, pr.read());
+        assertEquals(b, pr.read());
+        assertNull(pr.read());
+        assertNull(pr.read());
+    }
+    
+    @Test
+    public void emptyInputHasNoPuzzles() throws IOException
+    {
+        assertNull(new PuzzleReader(new StringReader("")).read());
+    }
+    
+    @Test
+    public void readingContinuesAfterBadPuzzle() throws IOException
+    {
+        PuzzleReader pr = new PuzzleReader(new StringReader(TOO_WIDE
+                + "\n\n2\n"));
+        
+        try {
+            pr.read();
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // Expected
+        }
+        
+        Futoshiki expected = new Futoshiki(2);
+        expected.set(1, 1, 2);
+        
+        assertEquals(expected, pr.read());
+    }
+    
+    private static Futoshiki sample() throws IOException
+    {
+        return NineSample.fromStream(
+                NineSample.class.getResourceAsStream("sample-9x9.txt"));
+    }
+    
+    @Test
+    public void readsAsParsed() throws IOException
+    {
+        String s = FutoshikiPrinter.toString(sample());
+        
+        assertEquals(FutoshikiPrinter.parse(s),
+                new PuzzleReader(new StringReader(s)).read());
+    }
+    
+    @Test
+    public void readsFromCharBuffer() throws IOException
+    {
+        Futoshiki f = sample();
+        String s = FutoshikiPrinter.toString(f);
+        
+        PuzzleReader pr = new PuzzleReader(CharBuffer.wrap(s + "\n" + s));
+        
+        assertEquals(f, pr.read());
+        assertEquals(f, pr.read());
+        assertNull(pr.read());
+    }
+    
+    @Test
+    public void readsFromByteBuffer() throws IOException
+    {
+        Futoshiki f = sample();
+        String s = FutoshikiPrinter.toString(f);
+        
+        PuzzleReader pr = new PuzzleReader(ByteBuffer.wrap(
+                (s + "\n" + s).getBytes("us-ascii")));
+        
+        assertEquals(f, pr.read());
+        assertEquals(f, pr.read());
+        assertNull(pr.read());
+    }
+    
+    @Test
+    public void anyLineEndingIsAccepted() throws IOException
+    {
+        Futoshiki a = new Futoshiki(3);
+        a.set(1, 1, 2);
+        a.addGtRule(2, 2, 2, 3);
+        a.addGtRule(3, 1, 2, 1);
+        
+        String s = FutoshikiPrinter.toString(a);
+        
+        PuzzleReader pr = new PuzzleReader(new StringReader(
+                s.replace("\n", "\r\n") + "\r\n" + s.replace("\n", "\r")
+                + "\r" + s));
+        
+        assertEquals(a, pr.read());
+        assertEquals(a, pr.read());
+        assertEquals(a, pr.read());
+        assertNull(pr.read());
+    }
+    
+    @Test
+    public void puzzlesOfTheSameSizeAreReused() throws IOException
+    {
+        Futoshiki a = new Futoshiki(2);
+        a.set(1, 1, 2);
+        a.addGtRule(1, 1, 2, 1);
+        
+        Futoshiki b = new Futoshiki(2);
+        b.set(2, 2, 1);
+        
+        Futoshiki c = new Futoshiki(3);
+        
+        PuzzleReader pr = new PuzzleReader(new StringReader(
+                a + "\n" + b + "\n" + c));
+        
+        Futoshiki f = pr.read();
+        assertEquals(a, f);
+        
+        assertSame(f, pr.read(f));
+        assertEquals(b, f);
+        assertEquals(0, f.get(1, 1));
+        assertEquals(1, f.get(2, 2));
+        
+        assertEquals(c, pr.read(f));
+        assertNull(pr.read(f));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.kafsemo.futoshiki.Rater.Technique;
+import org.kafsemo.futoshiki.sample.NineSample;
+
+public class TestRater
+{
+    @Test
+    public void solvedPuzzleNeedsNothing()
+    {
+        Futoshiki f = FutoshikiPrinter.parse("1 2\n   \n2 1\n");
+        
+        Rating r = new Rater().rate(f);
+        
+        assertTrue(r.isSolved());
+        assertEquals(0, r.getScore());
+        assertNull(r.getHardest());
+    }
+    
+    @Test
+    public void givensAloneAreFree()
+    {
+        Futoshiki f = FutoshikiPrinter.parse("1 2 3\n     \n2 3 1\n     \n3 1  \n");
+        
+        Rating r = new Rater().rate(f);
+        
+        assertTrue(r.isSolved());
+        assertEquals(0, r.getScore());
+    }
+    
+    @Test
+    public void singlesAreFollowedThrough()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.set(1, 1, 1);
+        
+        Rating r = new Rater().rate(f);
+        
+        assertTrue(r.isSolved());
+        assertTrue(r.getSteps(Technique.NAKED_SINGLE) > 0);
+        assertEquals(Technique.NAKED_SINGLE, r.getHardest());
+        assertEquals(0, r.getGuesses());
+        assertEquals(r.getSteps(Technique.NAKED_SINGLE)
+                * Technique.NAKED_SINGLE.getCost(), r.getScore());
+    }
+    
+    @Test
+    public void ruleIsUsedForBounds()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.addGtRule(1, 1, 2, 1);
+        
+        Rating r = new Rater().rate(f);
+        
+        assertTrue(r.isSolved());
+        assertEquals(1, r.getSteps(Technique.INEQUALITY));
+        assertEquals(0, r.getGuesses());
+    }
+    
+    @Test
+    public void emptyPuzzleNeedsGuesses()
+    {
+        Rating r = new Rater().rate(new Futoshiki(4));
+        
+        assertTrue(r.isSolved());
+        assertTrue(r.getGuesses() > 0);
+        assertTrue(r.getScore() >= r.getGuesses() * Rater.GUESS_COST);
+    }
+    
+    @Test
+    public void contradictionIsNotSolved()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.set(1, 1, 1);
+        f.set(2, 1, 1);
+        
+        assertFalse(new Rater().rate(f).isSolved());
+        
+        Futoshiki g = new Futoshiki(3);
+        g.addGtRule(1, 1, 2, 1);
+        g.addGtRule(2, 1, 1, 2);
+        g.addGtRule(1, 2, 1, 1);
+        
+        assertFalse(new Rater().rate(g).isSolved());
+    }
+    
+    @Test
+    public void sampleIsSolved() throws IOException
+    {
+        Futoshiki f = NineSample.fromStream(
+                NineSample.class.getResourceAsStream("sample-9x9.txt"));
+        
+        Rating r = new Rater().rate(f);
+        
+        assertTrue(r.isSolved());
+        assertTrue(r.getScore() > 0);
+    }
+    
+    @Test
+    public void raterCanBeReused()
+    {
+        Generator g = new Generator(0);
+        Rater rater = new Rater();
+        
+        for (int length = 3; length <= 7; length++) {
+            Futoshiki f = g.generate(length);
+            
+            Rating first = rater.rate(f);
+            assertTrue(first.isSolved());
+            
+            rater.rate(g.generate(length + 1));
+            
+            assertEquals(first.toString(), rater.rate(f).toString());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RuleGraph}, propagating bounds along rules.
+ * 
+ * @author Joseph Walton
+ */
+public class TestRuleGraph
+{
+    @Test
+    public void boundsTravelAlongChains()
+    {
+        Futoshiki f = new Futoshiki(5);
+        f.addGtRule(1, 1, 1, 2);
+        f.addGtRule(1, 2, 2, 2);
+        f.addGtRule(2, 2, 2, 3);
+        
+        Possibilities p = new Possibilities(5);
+        assertTrue(p.use(f, new Propagator(new RuleGraph(f), null)));
+        
+        assertEquals(4, p.minPossible(1, 1));
+        assertEquals(3, p.minPossible(1, 2));
+        assertEquals(2, p.minPossible(2, 2));
+        assertEquals(1, p.minPossible(2, 3));
+        assertEquals(2, p.maxPossible(2, 3));
+    }
+    
+    @Test
+    public void changesAreOnlyPropagatedFromQueuedCells()
+    {
+        Futoshiki f = new Futoshiki(5);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 1, 3, 1);
+        
+        RuleGraph rules = new RuleGraph(f);
+        Possibilities p = new Possibilities(5);
+        assertTrue(p.use(f, new Propagator(rules, null)));
+        assertEquals(3, p.minPossible(1, 1));
+        
+        p.use(3, 1, 3);
+        assertTrue(rules.propagate(p));
+        assertEquals(5, p.minPossible(1, 1));
+        assertEquals(4, p.minPossible(2, 1));
+        assertEquals(4, p.maxPossible(2, 1));
+    }
+    
+    @Test
+    public void cellsInTheSameLineNeedDistinctValues()
+    {
+        /* Greater than two cells in a row, which can't both be 1 */
+        Futoshiki f = new Futoshiki(4);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(1, 1, 3, 1);
+        
+        /* Less than two cells in a column, which can't both be 4 */
+        f.addGtRule(4, 2, 4, 4);
+        f.addGtRule(4, 3, 4, 4);
+        
+        Possibilities p = new Possibilities(4);
+        assertTrue(p.use(f, new Propagator(new RuleGraph(f), null)));
+        
+        assertEquals(3, p.minPossible(1, 1));
+        assertEquals(2, p.maxPossible(4, 4));
+    }
+    
+    @Test
+    public void cyclesCannotBeSatisfied()
+    {
+        Futoshiki f = new Futoshiki(5);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 1, 2, 2);
+        f.addGtRule(2, 2, 1, 2);
+        f.addGtRule(1, 2, 1, 1);
+        
+        Possibilities p = new Possibilities(5);
+        assertFalse(p.use(f, new Propagator(new RuleGraph(f), null)));
+        assertEquals(0, p.possibleCount(1, 1));
+    }
+    
+    @Test
+    public void emptyCellIsReported()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.set(1, 1, 1);
+        f.addGtRule(1, 1, 2, 1);
+        
+        Possibilities p = new Possibilities(2);
+        assertFalse(p.use(f, new Propagator(new RuleGraph(f), null)));
+    }
+}
@@ -19,14 +19,20 @@
 package org.kafsemo.futoshiki;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -89,6 +95,247 @@ public class TestSolver
         assertTrue(sg.solutions.contains(expectedSolution2));
     }
     
+    @Test
+    public void solverFindsEveryLatinSquare()
+    {
+        SolutionGatherer sg = new SolutionGatherer();
+        
+        new Solver(sg).solve(new Futoshiki(4));
+        
+        assertEquals(576, sg.solutions.size());
+        assertEquals(576, new HashSet<Futoshiki>(sg.solutions).size());
+        for (Futoshiki s : sg.solutions) {
+            assertTrue(s.isFull());
+            assertTrue(s.isValid());
+        }
+    }
+    
+    @Test
+    public void everyAllDifferentSettingFindsTheSameSolutions()
+    {
+        Futoshiki f = new Futoshiki(4);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 2, 2, 3);
+        f.addGtRule(4, 4, 3, 4);
+        f.set(3, 3, 2);
+        
+        Collection<Futoshiki> expected = null;
+        
+        for (Solver.AllDifferent ad : Solver.AllDifferent.values()) {
+            SolutionGatherer sg = new SolutionGatherer();
+            
+            Solver s = new Solver(sg);
+            s.setAllDifferent(ad);
+            s.solve(f);
+            
+            if (expected == null) {
+                expected = sg.solutions;
+                assertTrue(expected.size() > 1);
+            } else {
+                assertEquals(ad.toString(), new HashSet<Futoshiki>(expected),
+                        new HashSet<Futoshiki>(sg.solutions));
+                assertEquals(expected.size(), sg.solutions.size());
+            }
+        }
+    }
+    
+    @Test
+    public void solverLeavesPuzzleUnchanged()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.set(1, 1, 2);
+        f.addGtRule(2, 1, 3, 1);
+        
+        Futoshiki original = f.clone();
+        
+        new Solver(new SolutionGatherer()).solve(f);
+        
+        assertEquals(original, f);
+    }
+    
+    @Test
+    public void countMatchesSolutionsFound()
+    {
+        Futoshiki f = new Futoshiki(5);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 2, 2, 3);
+        f.addGtRule(4, 4, 3, 4);
+        f.set(3, 3, 2);
+        
+        SolutionGatherer sg = new SolutionGatherer();
+        new Solver(sg).solve(f);
+        
+        for (Solver.AllDifferent ad : Solver.AllDifferent.values()) {
+            Solver s = new Solver();
+            s.setAllDifferent(ad);
+            assertEquals(ad.toString(), sg.solutions.size(), s.count(f));
+        }
+    }
+    
+    @Test
+    public void countFindsEveryLatinSquare()
+    {
+        assertEquals(1, new Solver().count(new Futoshiki(1)));
+        assertEquals(2, new Solver().count(new Futoshiki(2)));
+        assertEquals(576, new Solver().count(new Futoshiki(4)));
+        assertEquals(161280, new Solver().count(new Futoshiki(5)));
+    }
+    
+    @Test
+    public void cachedCountsMatchCountsFound()
+    {
+        Futoshiki f = new Futoshiki(5);
+        f.addGtRule(1, 1, 2, 1);
+        f.addGtRule(2, 2, 2, 3);
+        f.addGtRule(4, 4, 3, 4);
+        f.set(3, 3, 2);
+        
+        for (Solver.AllDifferent ad : Solver.AllDifferent.values()) {
+            Solver s = new Solver();
+            s.setAllDifferent(ad);
+            long expected = s.count(f);
+            
+            s.setCountCache(1 << 12);
+            assertEquals(ad.toString(), expected, s.count(f));
+        }
+    }
+    
+    @Test
+    public void cachedCountsAreReused()
+    {
+        SolverMonitor m = new SolverMonitor();
+        Solver s = new Solver();
+        s.setMonitor(m);
+        
+        s.count(new Futoshiki(5));
+        long nodes = m.getNodes();
+        m.reset();
+        
+        s.setCountCache(1 << 16);
+        assertEquals(161280, s.count(new Futoshiki(5)));
+        assertTrue(m.getCacheHits() > 0);
+        assertTrue(m.getNodes() < nodes);
+        
+        /* Even a single slot gives the right count */
+        s.setCountCache(1);
+        assertEquals(161280, s.count(new Futoshiki(5)));
+    }
+    
+    @Test
+    public void countIncludesRulesWithinTheLastRow()
+    {
+        Futoshiki f = new Futoshiki(3);
+        f.set(1, 1, 1);
+        f.set(2, 1, 2);
+        f.set(3, 1, 3);
+        f.set(1, 2, 2);
+        f.set(2, 2, 3);
+        f.set(3, 2, 1);
+        
+        assertEquals(1, new Solver().count(f));
+        
+        f.clear(1, 2);
+        f.clear(2, 2);
+        f.clear(3, 2);
+        f.addGtRule(1, 2, 2, 2);
+        
+        /* Rows 2 and 3 may be swapped, but only one way round is allowed */
+        assertEquals(1, new Solver().count(f));
+    }
+    
+    @Test
+    public void impossiblePuzzleHasNoSolutionsToCount()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.set(1, 1, 1);
+        f.addGtRule(1, 1, 2, 1);
+        
+        assertEquals(0, new Solver().count(f));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void solverWithoutTargetCannotSolve()
+    {
+        new Solver().solve(new Futoshiki(2));
+    }
+    
+    @Test
+    public void checkFindsPuzzleWithNoSolution()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.set(1, 1, 1);
+        f.addGtRule(1, 1, 2, 1);
+        
+        Uniqueness u = new Solver().check(f);
+        
+        assertEquals(Uniqueness.Status.NONE, u.getStatus());
+        assertNull(u.getSolution());
+        assertNull(u.getOtherSolution());
+    }
+    
+    @Test
+    public void checkFindsUniqueSolution()
+    {
+        Futoshiki f = new Futoshiki(2);
+        f.set(1, 1, 1);
+        
+        Futoshiki expected = f.clone();
+        expected.set(2, 1, 2);
+        expected.set(1, 2, 2);
+        expected.set(2, 2, 1);
+        
+        Uniqueness u = new Solver().check(f);
+        
+        assertEquals(Uniqueness.Status.UNIQUE, u.getStatus());
+        assertEquals(expected, u.getSolution());
+        assertNull(u.getOtherSolution());
+    }
+    
+    @Test
+    public void checkGivesTwoDifferentSolutionsWhenNotUnique()
+    {
+        Futoshiki f = new Futoshiki(4);
+        f.addGtRule(1, 1, 2, 1);
+        
+        Uniqueness u = new Solver().check(f);
+        
+        assertEquals(Uniqueness.Status.MULTIPLE, u.getStatus());
+        assertTrue(u.getSolution().isFull());
+        assertTrue(u.getSolution().isValid());
+        assertTrue(u.getOtherSolution().isFull());
+        assertTrue(u.getOtherSolution().isValid());
+        assertFalse(u.getSolution().equals(u.getOtherSolution()));
+    }
+    
+    @Test
+    public void solverHandlesPuzzlesBeyondNineByNine()
+    {
+        Futoshiki f = new Futoshiki(16);
+        
+        /* A shifted Latin square with one row missing */
+        for (int row = 1; row < 16; row++) {
+            for (int column = 1; column <= 16; column++) {
+                f.set(column, row, 1 + (row + column) % 16);
+            }
+        }
+        f.addGtRule(2, 16, 1, 16);
+        
+        for (Solver.AllDifferent ad : Solver.AllDifferent.values()) {
+            SolutionGatherer sg = new SolutionGatherer();
+            
+            Solver s = new Solver(sg);
+            s.setAllDifferent(ad);
+            s.solve(f);
+            
+            assertEquals(1, sg.solutions.size());
+            assertEquals(1, s.count(f));
+        }
+        
+        f.clear(16, 15);
+        f.clear(16, 16);
+        assertEquals(1, new Solver().count(f));
+    }
+    
     static class SolutionGatherer implements SolutionTarget
     {
         Collection<Futoshiki> solutions = new ArrayList<Futoshiki>();
@@ -131,10 +378,16 @@ public class TestSolver
         Mockito.when(mockTarget.remainingPossibilities(Mockito.<BigInteger>any())).thenReturn(false);
         new Solver(mockTarget).solve(f);
 
-        mockTarget = Mockito.mock(SolutionTarget.class);
-        Mockito.when(mockTarget.solution(Mockito.<Futoshiki>any())).thenReturn(true);
-        Mockito.when(mockTarget.remainingPossibilities(Mockito.<BigInteger>any())).thenReturn(true).thenReturn(false);
-        new Solver(mockTarget).solve(f);
+        for (Solver.Progress p : EnumSet.of(Solver.Progress.ESTIMATED,
+                Solver.Progress.EXACT))
+        {
+            mockTarget = Mockito.mock(SolutionTarget.class);
+            Mockito.when(mockTarget.solution(Mockito.<Futoshiki>any())).thenReturn(true);
+            Mockito.when(mockTarget.remainingPossibilities(Mockito.<BigInteger>any())).thenReturn(true).thenReturn(false);
+            Solver s = new Solver(mockTarget);
+            s.setProgress(p);
+            s.solve(f);
+        }
     }
     
     static class PossibilityCountGatherer implements SolutionTarget
@@ -160,7 +413,9 @@ public class TestSolver
 
         PossibilityCountGatherer pcg = new PossibilityCountGatherer();
 
-        new Solver(pcg).solve(f);
+        Solver s = new Solver(pcg);
+        s.setProgress(Solver.Progress.EXACT);
+        s.solve(f);
 
         BigInteger sixteen = BigInteger.valueOf(16),
             four = BigInteger.valueOf(4),
@@ -176,6 +431,38 @@ public class TestSolver
         assertEquals(expected, pcg.counts);
     }
     
+    @Test
+    public void onlyTotalAndZeroAreReportedWithoutProgress()
+    {
+        PossibilityCountGatherer pcg = new PossibilityCountGatherer();
+
+        new Solver(pcg).solve(new Futoshiki(4));
+        
+        assertEquals(Arrays.asList(BigInteger.valueOf(4).pow(16),
+                BigInteger.ZERO), pcg.counts);
+    }
+    
+    @Test
+    public void estimatedCountsFallFromTotalToZero()
+    {
+        PossibilityCountGatherer pcg = new PossibilityCountGatherer();
+
+        Solver s = new Solver(pcg);
+        s.setProgress(Solver.Progress.ESTIMATED);
+        s.solve(new Futoshiki(5));
+        
+        BigInteger total = BigInteger.valueOf(5).pow(25);
+        
+        assertTrue(pcg.counts.size() > 2);
+        assertEquals(total, pcg.counts.get(0));
+        assertEquals(BigInteger.ZERO, pcg.counts.get(pcg.counts.size() - 1));
+        
+        for (int i = 1; i < pcg.counts.size(); i++) {
+            assertTrue(pcg.counts.get(i).compareTo(pcg.counts.get(i - 1)) <= 0);
+        }
+        assertTrue(pcg.counts.get(1).compareTo(total) < 0);
+    }
+    
     @Test
     public void zeroPossibilityCountIsNotProvidedForCancelledSearch()
     {
@@ -206,4 +493,204 @@ public class TestSolver
         assertEquals(Arrays.asList(BigInteger.ZERO, BigInteger.ZERO),
             pcg.counts);
     }
+    
+    @Test
+    public void completeSearchIsSolved()
+    {
+        SolutionGatherer sg = new SolutionGatherer();
+        
+        Outcome o = new Solver(sg).solve(new Futoshiki(4));
+        
+        assertEquals(Outcome.Status.SOLVED, o.getStatus());
+        assertEquals(576, o.getSolutions());
+        assertEquals(576, sg.solutions.size());
+        assertTrue(o.getNodes() > 576);
+    }
+    
+    @Test
+    public void searchStopsAtNodeLimit()
+    {
+        SolutionGatherer sg = new SolutionGatherer();
+        Solver s = new Solver(sg);
+        s.setNodeLimit(100);
+        
+        Outcome o = s.solve(new Futoshiki(6));
+        
+        assertEquals(Outcome.Status.EXHAUSTED, o.getStatus());
+        assertEquals(100, o.getNodes());
+        assertEquals(sg.solutions.size(), o.getSolutions());
+    }
+    
+    @Test(timeout = 10000)
+    public void searchStopsAtTimeLimit()
+    {
+        Solver s = new Solver(new SolutionGatherer() {
+            public boolean solution(Futoshiki f)
+            {
+                return true;
+            }
+        });
+        s.setTimeLimit(20, TimeUnit.MILLISECONDS);
+        
+        Outcome o = s.solve(new Futoshiki(9));
+        
+        assertEquals(Outcome.Status.TIMED_OUT, o.getStatus());
+        assertTrue(o.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+    
+    @Test(timeout = 10000)
+    public void searchStopsOnceCancelled()
+    {
+        final Cancellation c = new Cancellation();
+        
+        Solver s = new Solver(new SolutionGatherer() {
+            public boolean solution(Futoshiki f)
+            {
+                c.cancel();
+                return true;
+            }
+        });
+        s.setCancellation(c);
+        
+        Outcome o = s.solve(new Futoshiki(9));
+        
+        assertEquals(Outcome.Status.CANCELLED, o.getStatus());
+        assertTrue(o.getSolutions() <= Search.CHECK_INTERVAL);
+        
+        o = s.solve(new Futoshiki(9));
+        
+        assertEquals(Outcome.Status.CANCELLED, o.getStatus());
+        assertEquals(0, o.getNodes());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void nodeLimitMustBePositive()
+    {
+        new Solver().setNodeLimit(0);
+    }
+    
+    @Test
+    public void statisticsAreCounted()
+    {
+        Outcome o = new Solver(new SolutionGatherer()).solve(new Futoshiki(4));
+        SolverStats st = o.getStats();
+        
+        assertEquals(576, st.getSolutions());
+        assertEquals(16, st.getMaxDepth());
+        assertTrue(st.getPropagations() > 0);
+        assertTrue(st.getPropagations() <= st.getNodes());
+        assertTrue(st.getElapsedNanos() > 0);
+        assertEquals(0, st.getPropagationNanos());
+        assertEquals(0, st.getValidityNanos());
+    }
+    
+    @Test
+    public void partsAreTimedOnlyWhenAskedFor()
+    {
+        Solver s = new Solver(new SolutionGatherer());
+        s.setTiming(true);
+        
+        SolverStats st = s.solve(new Futoshiki(4)).getStats();
+        
+        assertTrue(st.getPropagationNanos() > 0);
+        assertTrue(st.getValidityNanos() > 0);
+        assertTrue(st.getPropagationNanos() + st.getValidityNanos()
+                <= st.getElapsedNanos());
+    }
+    
+    @Test
+    public void statisticsAreReportedToMonitor()
+    {
+        SolverMonitor m = new SolverMonitor();
+        Solver s = new Solver(new SolutionGatherer());
+        s.setMonitor(m);
+        s.setNodeLimit(100);
+        
+        s.solve(new Futoshiki(6));
+        assertEquals(1, s.count(new Futoshiki(1)));
+        
+        assertEquals(2, m.getSolves());
+        assertEquals(1, m.getExhausted());
+        assertEquals(101, m.getNodes());
+    }
+    
+    @Test(timeout = 10000)
+    public void countStopsAtLimits()
+    {
+        Solver s = new Solver();
+        s.setNodeLimit(1000);
+        
+        try {
+            s.count(new Futoshiki(9));
+            fail("A blank 9x9 can't be counted in 1000 nodes");
+        } catch (LimitReachedException lre) {
+            assertEquals(Outcome.Status.EXHAUSTED, lre.getOutcome().getStatus());
+            assertEquals(1000, lre.getOutcome().getNodes());
+        }
+        
+        s = new Solver();
+        s.setTimeLimit(20, TimeUnit.MILLISECONDS);
+        
+        try {
+            s.count(new Futoshiki(9));
+            fail("A blank 9x9 can't be counted in 20ms");
+        } catch (LimitReachedException lre) {
+            assertEquals(Outcome.Status.TIMED_OUT, lre.getOutcome().getStatus());
+        }
+        
+        Cancellation c = new Cancellation();
+        c.cancel();
+        s = new Solver();
+        s.setCancellation(c);
+        
+        try {
+            s.count(new Futoshiki(9));
+            fail("The count was already cancelled");
+        } catch (LimitReachedException lre) {
+            assertEquals(Outcome.Status.CANCELLED, lre.getOutcome().getStatus());
+        }
+    }
+    
+    @Test
+    public void checkStopsAtLimits()
+    {
+        Solver s = new Solver();
+        s.setNodeLimit(1);
+        
+        Uniqueness u = s.check(new Futoshiki(9));
+        assertEquals(Uniqueness.Status.UNKNOWN, u.getStatus());
+        assertEquals(Outcome.Status.EXHAUSTED, u.getOutcome().getStatus());
+        assertEquals(1, u.getOutcome().getNodes());
+        
+        Cancellation c = new Cancellation();
+        c.cancel();
+        s = new Solver();
+        s.setCancellation(c);
+        
+        u = s.check(new Futoshiki(9));
+        assertEquals(Uniqueness.Status.UNKNOWN, u.getStatus());
+        assertEquals(Outcome.Status.CANCELLED, u.getOutcome().getStatus());
+    }
+    
+    @Test
+    public void checkReportsLimitToMonitor()
+    {
+        SolverMonitor m = new SolverMonitor();
+        Solver s = new Solver();
+        s.setMonitor(m);
+        s.setNodeLimit(1);
+        
+        s.check(new Futoshiki(9));
+        
+        assertEquals(1, m.getExhausted());
+    }
+    
+    @Test
+    public void completeCheckIsSolved()
+    {
+        Uniqueness u = new Solver().check(new Futoshiki(9));
+        
+        assertEquals(Uniqueness.Status.MULTIPLE, u.getStatus());
+        assertEquals(Outcome.Status.SOLVED, u.getOutcome().getStatus());
+    }
 }
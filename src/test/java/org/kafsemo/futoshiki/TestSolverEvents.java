@@ -0,0 +1,123 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Joseph Walton
+ */
+public class TestSolverEvents
+{
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static Futoshiki puzzle()
+    {
+        Futoshiki f = new Futoshiki(4);
+        f.set(1, 1, 1);
+        f.set(2, 2, 1);
+        f.addGtRule(2, 1, 1, 1);
+        return f;
+    }
+    
+    private List<RecordedEvent> record(String threshold) throws Exception
+    {
+        File file = tmp.newFile("solve.jfr");
+        
+        Recording r = new Recording();
+        try {
+            r.enable("org.kafsemo.futoshiki.SolveStart");
+            r.enable("org.kafsemo.futoshiki.Solve");
+            r.enable("org.kafsemo.futoshiki.SlowSolve")
+                .withThreshold(Duration.parse(threshold));
+            r.start();
+            
+            new Solver(new TestSolver.SolutionGatherer()).solve(puzzle());
+            
+            r.stop();
+            r.dump(file.toPath());
+        } finally {
+            r.close();
+        }
+        
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (RecordedEvent e : RecordingFile.readAllEvents(file.toPath())) {
+            if (e.getEventType().getName().startsWith("org.kafsemo.futoshiki.")) {
+                events.add(e);
+            }
+        }
+        return events;
+    }
+    
+    private static RecordedEvent find(List<RecordedEvent> events, String name)
+    {
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals("org.kafsemo.futoshiki." + name)) {
+                return e;
+            }
+        }
+        return null;
+    }
+    
+    @Test
+    public void startAndEndAreRecorded() throws Exception
+    {
+        List<RecordedEvent> events = record("PT1H");
+        
+        RecordedEvent start = find(events, "SolveStart");
+        assertEquals(4, start.getInt("length"));
+        assertEquals(2, start.getInt("givens"));
+        assertEquals(1, start.getInt("rules"));
+        
+        RecordedEvent solve = find(events, "Solve");
+        assertEquals(4, solve.getInt("length"));
+        assertEquals("SOLVED", solve.getString("outcome"));
+        assertTrue(solve.getLong("nodes") > 0);
+        assertTrue(solve.getLong("solutions") > 0);
+        
+        assertEquals(null, find(events, "SlowSolve"));
+    }
+    
+    @Test
+    public void slowSolveCarriesPuzzle() throws Exception
+    {
+        List<RecordedEvent> events = record("PT0S");
+        
+        RecordedEvent slow = find(events, "SlowSolve");
+        assertEquals(FutoshikiPrinter.toString(puzzle()),
+                slow.getString("puzzle"));
+        assertEquals("SOLVED", slow.getString("outcome"));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * @author Joseph Walton
+ */
+public class TestSolverMonitor
+{
+    @Test
+    public void totalsAddUpOverSearches()
+    {
+        SolverMonitor m = new SolverMonitor();
+        Solver s = new Solver(new TestSolver.SolutionGatherer());
+        s.setMonitor(m);
+        
+        long nodes = s.solve(new Futoshiki(3)).getNodes()
+            + s.solve(new Futoshiki(4)).getNodes();
+        
+        assertEquals(2, m.getSolves());
+        assertEquals(12 + 576, m.getSolutions());
+        assertEquals(nodes, m.getNodes());
+        assertEquals(16, m.getMaxDepth());
+    }
+    
+    @Test
+    public void resetClearsTotals()
+    {
+        SolverMonitor m = new SolverMonitor();
+        Solver s = new Solver(new TestSolver.SolutionGatherer());
+        s.setMonitor(m);
+        
+        s.solve(new Futoshiki(3));
+        m.reset();
+        
+        assertEquals(0, m.getSolves());
+        assertEquals(0, m.getNodes());
+        assertEquals(0, m.getMaxDepth());
+    }
+    
+    @Test
+    public void totalsAreVisibleOverJmx() throws Exception
+    {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        SolverMonitor m = new SolverMonitor();
+        ObjectName name = m.register(server,
+                new ObjectName(SolverMonitor.DEFAULT_NAME));
+        
+        Solver s = new Solver(new TestSolver.SolutionGatherer());
+        s.setMonitor(m);
+        s.solve(new Futoshiki(3));
+        
+        assertEquals(1L, server.getAttribute(name, "Solves"));
+        assertEquals(12L, server.getAttribute(name, "Solutions"));
+        
+        server.invoke(name, "reset", null, null);
+        
+        assertEquals(0L, server.getAttribute(name, "Solves"));
+    }
+}
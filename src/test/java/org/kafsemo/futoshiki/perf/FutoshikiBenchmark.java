@@ -0,0 +1,100 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki.perf;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.kafsemo.futoshiki.Futoshiki;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to check a puzzle's validity: from scratch for a new copy, and
+ * after each change to a single cell, as the solver does.
+ * 
+ * @author Joseph Walton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FutoshikiBenchmark
+{
+    @Param({Samples.FIVE, Samples.NINE, Samples.NINE_THINK})
+    public String puzzle;
+    
+    private Futoshiki f;
+    private int[] blankColumns, blankRows;
+    private int blanks, next;
+    
+    @Setup
+    public void load() throws IOException
+    {
+        f = Samples.load(puzzle);
+        
+        int length = f.getLength();
+        blankColumns = new int[length * length];
+        blankRows = new int[length * length];
+        
+        for (int row = 1; row <= length; row++) {
+            for (int column = 1; column <= length; column++) {
+                if (f.get(column, row) == 0) {
+                    blankColumns[blanks] = column;
+                    blankRows[blanks] = row;
+                    blanks++;
+                }
+            }
+        }
+        
+        f.isValid();
+    }
+    
+    @Benchmark
+    public boolean isValidAfterCopy()
+    {
+        return f.clone().isValid();
+    }
+    
+    @Benchmark
+    public boolean isValidAfterChange()
+    {
+        int column = blankColumns[next], row = blankRows[next];
+        int v = 1 + next % f.getLength();
+        next = (next + 1) % blanks;
+        
+        f.set(column, row, v);
+        boolean valid = f.isValid();
+        f.clear(column, row);
+        
+        return valid;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.kafsemo.futoshiki.DancingLinksSolver;
+import org.kafsemo.futoshiki.Futoshiki;
+import org.kafsemo.futoshiki.Solver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to count every Latin square of a size: the search through empty
+ * puzzles with no rules, by each solver.
+ * 
+ * @author Joseph Walton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatinSquaresBenchmark
+{
+    @Param({"3", "4", "5"})
+    public int size;
+    
+    @Param({"NONE", "MATCHING"})
+    public Solver.AllDifferent allDifferent;
+    
+    @Benchmark
+    public long count()
+    {
+        Solver s = new Solver();
+        s.setAllDifferent(allDifferent);
+        
+        return s.count(new Futoshiki(size));
+    }
+    
+    @Benchmark
+    public long dancingLinks()
+    {
+        return new DancingLinksSolver().count(new Futoshiki(size));
+    }
+}
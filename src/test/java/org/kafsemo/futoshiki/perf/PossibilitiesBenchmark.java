@@ -0,0 +1,80 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki.perf;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.kafsemo.futoshiki.Futoshiki;
+import org.kafsemo.futoshiki.Possibilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to work out the possibilities for a puzzle, and to total them.
+ * 
+ * @author Joseph Walton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PossibilitiesBenchmark
+{
+    @Param({Samples.FIVE, Samples.NINE, Samples.NINE_THINK})
+    public String puzzle;
+    
+    private Futoshiki f;
+    private Possibilities poss;
+    
+    @Setup
+    public void load() throws IOException
+    {
+        f = Samples.load(puzzle);
+        poss = new Possibilities(f.getLength());
+        poss.use(f);
+    }
+    
+    @Benchmark
+    public Possibilities use()
+    {
+        Possibilities p = new Possibilities(f.getLength());
+        p.use(f);
+        return p;
+    }
+    
+    @Benchmark
+    public BigInteger size()
+    {
+        return poss.size();
+    }
+}
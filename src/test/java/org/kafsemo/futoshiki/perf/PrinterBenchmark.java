@@ -0,0 +1,122 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki.perf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.kafsemo.futoshiki.Futoshiki;
+import org.kafsemo.futoshiki.FutoshikiPrinter;
+import org.kafsemo.futoshiki.PuzzleReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to read and write puzzles in the text format.
+ * 
+ * @author Joseph Walton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrinterBenchmark
+{
+    @Param({Samples.FIVE, Samples.NINE})
+    public String puzzle;
+    
+    private Futoshiki f;
+    private String text;
+    
+    private CharBuffer corpus;
+    private PuzzleReader reader;
+    private Futoshiki target;
+    
+    private ByteBuffer output;
+    
+    @Setup
+    public void load() throws IOException
+    {
+        f = Samples.load(puzzle);
+        text = FutoshikiPrinter.toString(f);
+        
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append(text).append('\n');
+        }
+        corpus = CharBuffer.wrap(sb);
+        reader = new PuzzleReader(corpus);
+        target = f.clone();
+        
+        output = ByteBuffer.allocate(
+                FutoshikiPrinter.printedLength(f.getLength()));
+    }
+    
+    @Benchmark
+    public Futoshiki parse()
+    {
+        return FutoshikiPrinter.parse(text);
+    }
+    
+    /**
+     * Read from a long series of copies, as from a corpus, so the reader's
+     * own set-up isn't counted against each puzzle.
+     */
+    @Benchmark
+    public Futoshiki read() throws IOException
+    {
+        Futoshiki p = reader.read(target);
+        
+        if (p == null) {
+            corpus.rewind();
+            reader = new PuzzleReader(corpus);
+            p = reader.read(target);
+        }
+        
+        return p;
+    }
+    
+    @Benchmark
+    public String print()
+    {
+        return FutoshikiPrinter.toString(f);
+    }
+    
+    @Benchmark
+    public ByteBuffer printInto()
+    {
+        output.clear();
+        FutoshikiPrinter.print(f, output);
+        return output;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *  A Futoshiki puzzle editor and solver.
+ *  Copyright © 2007, 2011 Joseph Walton
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.kafsemo.futoshiki.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.kafsemo.futoshiki.Futoshiki;
+import org.kafsemo.futoshiki.sample.NineSample;
+
+/**
+ * The sample puzzles used by the benchmarks.
+ * 
+ * @author Joseph Walton
+ */
+class Samples
+{
+    static final String FIVE = "sample-5x5.txt",
+        NINE = "sample-9x9.txt",
+        NINE_THINK = "sample-9x9-thinkquarterly.txt",
+        NINE_IMPOSSIBLE = "sample-9x9-thinkquarterly-impossible.txt";
+    
+    static Futoshiki load(String name) throws IOException
+    {
+        InputStream in = NineSample.class.getResourceAsStream(name);
+        
+        if (in == null) {
+            throw new IOException("No such sample: " + name);
+        }
+        
+        return NineSample.fromStream(in);
+    }
+}
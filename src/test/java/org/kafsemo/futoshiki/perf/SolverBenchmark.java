@@ -16,44 +16,69 @@
  *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package org.kafsemo.futoshiki.perf;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
 
 import org.kafsemo.futoshiki.Futoshiki;
 import org.kafsemo.futoshiki.Solver;
-import org.kafsemo.futoshiki.sample.NineSample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
 
+/**
+ * Time to find the first solution to each sample puzzle, or to show that
+ * there is none, with each choice of reasoning.
+ * 
+ * @author Joseph Walton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
 public class SolverBenchmark
 {
-    public static void main(String[] args) throws IOException
+    @Param({Samples.FIVE, Samples.NINE, Samples.NINE_THINK,
+        Samples.NINE_IMPOSSIBLE})
+    public String puzzle;
+    
+    @Param({"NONE", "BOUNDS", "MATCHING"})
+    public Solver.AllDifferent allDifferent;
+    
+    private Futoshiki f;
+    
+    @Setup
+    public void load() throws IOException
     {
-        InputStream in = NineSample.class.getResourceAsStream("sample-9x9.txt");
-        Futoshiki f = NineSample.fromStream(in);
-
-        String version = "A";
-        
-        for (int iter = 0; iter < 4; iter++) {
-            final int reps = 10;
-            long start = System.currentTimeMillis();
+        f = Samples.load(puzzle);
+    }
     
-            for (int i = 0; i < reps; i++) {
-                DummySolutionTarget st = new DummySolutionTarget();
-                new Solver(st).solve(f.clone());
-                assert st.solved;
-            }
-            
-            long end = System.currentTimeMillis();
-
-            double duration = (end - start) / (double) reps;
-            
-            System.out.println(version + "," + (duration) / 1000);
-        }
+    @Benchmark
+    public boolean solve()
+    {
+        FirstSolutionTarget st = new FirstSolutionTarget();
+        
+        Solver s = new Solver(st);
+        s.setAllDifferent(allDifferent);
+        s.solve(f);
+        
+        return st.solved;
     }
     
-    static class DummySolutionTarget implements Solver.SolutionTarget
+    static class FirstSolutionTarget implements Solver.SolutionTarget
     {
         boolean solved;
         
@@ -18,10 +18,8 @@
 
 package org.kafsemo.futoshiki.sample;
 
-import java.math.BigInteger;
-
+import org.kafsemo.futoshiki.DancingLinksSolver;
 import org.kafsemo.futoshiki.Futoshiki;
-import org.kafsemo.futoshiki.Solver;
 
 /**
  * Generate latin squares by solving the degenerate case: empty puzzles
@@ -32,7 +30,8 @@ public class LatinSquares
 {
     public static void main(String[] args)
     {
-        for (int i = 1; i <= 9; i++) {
+        /* Beyond seven, the count will not fit in a long */
+        for (int i = 1; i <= 7; i++) {
             long start = System.currentTimeMillis();
             
             long count = exhaustive(i);
@@ -43,41 +42,8 @@ public class LatinSquares
         }
     }
     
-    static class SolutionCounter implements Solver.SolutionTarget
-    {
-        long count = 0;
-        
-        public boolean solution(Futoshiki f)
-        {
-            count++;
-            
-            if (count < 0) {
-                throw new RuntimeException("Solution count overflow");
-            }
-            
-//            if (count % 100 == 0) {
-//                System.out.println("Solutions: " + count);
-//            }
-            
-            return true;
-        }
-        
-        public boolean remainingPossibilities(BigInteger count)
-        {
-            return true;
-        }
-    }
-    
     public static long exhaustive(int size)
     {
-        Futoshiki f = new Futoshiki(size);
-        
-        SolutionCounter sc = new SolutionCounter();
-        
-        Solver s = new Solver(sc);
-        
-        s.solve(f);
-        
-        return sc.count;
+        return new DancingLinksSolver().count(new Futoshiki(size));
     }
 }
@@ -18,7 +18,9 @@ public class NineSample
         Futoshiki f = fromStream(in);
         System.out.println(FutoshikiPrinter.toString(f));
 
-        new Solver(new SolverSample.PrintingSolutionTarget()).solve(f);
+        Solver s = new Solver(new SolverSample.PrintingSolutionTarget());
+        s.setProgress(Solver.Progress.ESTIMATED);
+        s.solve(f);
     }
     
     public static Futoshiki fromStream(InputStream in) throws IOException
@@ -38,7 +38,9 @@ public class SolverSample
         
         System.out.print(FutoshikiPrinter.toString(f));
         
-        new Solver(new PrintingSolutionTarget()).solve(f);
+        Solver s = new Solver(new PrintingSolutionTarget());
+        s.setProgress(Solver.Progress.ESTIMATED);
+        s.solve(f);
     }
 
     static Futoshiki g36()